@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp.client.processor;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.integration.aggregator.AbstractAggregatingMessageGroupProcessor;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+
+/**
+ * Joins the payloads of a group of request messages into a single multi-record
+ * request, separated by a delimiter; {@code String} payloads are converted using
+ * the configured charset. A request whose payload contains the delimiter, or is neither
+ * a {@code byte[]} nor a {@code String}, would shift every later record of the reply onto
+ * the wrong request, so it is failed and left out of the batch. The number of records in
+ * the batch is set in the {@link #RECORDS} header, so that the reply can be checked.
+ */
+class BatchAggregatingMessageGroupProcessor extends AbstractAggregatingMessageGroupProcessor {
+
+	/**
+	 * The header holding the number of records in a batched request, and expected in its reply.
+	 */
+	static final String RECORDS = "tcp_batchRecords";
+
+	private static final Log logger = LogFactory.getLog(BatchAggregatingMessageGroupProcessor.class);
+
+	private final byte[] delimiter;
+
+	private final Charset charset;
+
+	BatchAggregatingMessageGroupProcessor(byte[] delimiter, Charset charset) {
+		Assert.isTrue(delimiter.length > 0, "'delimiter' cannot be empty");
+		this.delimiter = delimiter;
+		this.charset = charset;
+	}
+
+	@Override
+	protected Object aggregatePayloads(MessageGroup group, Map<String, Object> defaultHeaders) {
+		ByteArrayOutputStream batch = new ByteArrayOutputStream();
+		int records = 0;
+		for (Message<?> message : group.getMessages()) {
+			byte[] record;
+			try {
+				record = toBytes(message.getPayload());
+			}
+			catch (IllegalArgumentException e) {
+				logger.error("Failed to batch " + message + ": " + e.getMessage());
+				continue;
+			}
+			if (records > 0) {
+				batch.write(this.delimiter, 0, this.delimiter.length);
+			}
+			batch.write(record, 0, record.length);
+			records++;
+		}
+		Assert.state(records > 0, "None of the batched requests could be sent");
+		defaultHeaders.put(RECORDS, records);
+		return batch.toByteArray();
+	}
+
+	private byte[] toBytes(Object payload) {
+		byte[] record;
+		if (payload instanceof byte[]) {
+			record = (byte[]) payload;
+		}
+		else if (payload instanceof String) {
+			record = ((String) payload).getBytes(this.charset);
+		}
+		else {
+			throw new IllegalArgumentException("Batched requests require a byte[] or String payload, but received: "
+					+ payload.getClass());
+		}
+		if (containsDelimiter(record)) {
+			throw new IllegalArgumentException("Batched requests cannot contain the batch delimiter");
+		}
+		return record;
+	}
+
+	private boolean containsDelimiter(byte[] record) {
+		for (int i = 0; i <= record.length - this.delimiter.length; i++) {
+			int j = 0;
+			while (j < this.delimiter.length && record[i + j] == this.delimiter[j]) {
+				j++;
+			}
+			if (j == this.delimiter.length) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
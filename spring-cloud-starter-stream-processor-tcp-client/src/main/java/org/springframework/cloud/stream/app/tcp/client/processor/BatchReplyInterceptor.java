@@ -0,0 +1,64 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp.client.processor;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorSupport;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+/**
+ * Copies the {@link BatchAggregatingMessageGroupProcessor#RECORDS} header of each batched
+ * request to its reply, so that {@link BatchReplySplitter} can check the number of
+ * records. Requests on a connection are answered in order, so each connection keeps a
+ * queue of the record counts of its outstanding requests.
+ */
+class BatchReplyInterceptor extends TcpConnectionInterceptorSupport {
+
+	private final Deque<Integer> outstanding = new ConcurrentLinkedDeque<>();
+
+	@Override
+	public void send(Message<?> message) throws Exception {
+		Integer records = message.getHeaders().get(BatchAggregatingMessageGroupProcessor.RECORDS, Integer.class);
+		if (records == null) {
+			super.send(message);
+			return;
+		}
+		this.outstanding.add(records);
+		try {
+			super.send(message);
+		}
+		catch (Exception e) {
+			this.outstanding.removeLastOccurrence(records);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean onMessage(Message<?> message) {
+		Integer records = this.outstanding.poll();
+		if (records == null) {
+			return super.onMessage(message);
+		}
+		return super.onMessage(MessageBuilder.fromMessage(message)
+				.setHeader(BatchAggregatingMessageGroupProcessor.RECORDS, records)
+				.build());
+	}
+
+}
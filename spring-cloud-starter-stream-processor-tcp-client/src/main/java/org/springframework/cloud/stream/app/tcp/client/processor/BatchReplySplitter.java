@@ -0,0 +1,80 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp.client.processor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.integration.splitter.AbstractMessageSplitter;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.util.Assert;
+
+/**
+ * Splits a batched reply into one message per record, using the same delimiter
+ * as {@link BatchAggregatingMessageGroupProcessor}. When the reply carries the number of
+ * records its request had, in the {@link BatchAggregatingMessageGroupProcessor#RECORDS}
+ * header, a reply with a different number fails rather than emitting records that do not
+ * line up with the requests.
+ */
+class BatchReplySplitter extends AbstractMessageSplitter {
+
+	private final byte[] delimiter;
+
+	BatchReplySplitter(byte[] delimiter) {
+		Assert.isTrue(delimiter.length > 0, "'delimiter' cannot be empty");
+		this.delimiter = delimiter;
+	}
+
+	@Override
+	protected Object splitMessage(Message<?> message) {
+		Object payload = message.getPayload();
+		Assert.isInstanceOf(byte[].class, payload, "Batched replies must have a byte[] payload");
+		byte[] reply = (byte[]) payload;
+		List<byte[]> records = new ArrayList<>();
+		int start = 0;
+		int i = 0;
+		while (i <= reply.length - this.delimiter.length) {
+			if (matchesDelimiter(reply, i)) {
+				records.add(Arrays.copyOfRange(reply, start, i));
+				i += this.delimiter.length;
+				start = i;
+			}
+			else {
+				i++;
+			}
+		}
+		records.add(Arrays.copyOfRange(reply, start, reply.length));
+		Integer expected = message.getHeaders().get(BatchAggregatingMessageGroupProcessor.RECORDS, Integer.class);
+		if (expected != null && expected != records.size()) {
+			throw new MessagingException(message, "Batched reply has " + records.size()
+					+ " records but its request had " + expected);
+		}
+		return records;
+	}
+
+	private boolean matchesDelimiter(byte[] reply, int offset) {
+		for (int j = 0; j < this.delimiter.length; j++) {
+			if (reply[offset + j] != this.delimiter[j]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp.client.processor;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorSupport;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+
+/**
+ * Correlates the frames of multi-frame replies with the request that caused them.
+ * Requests on a connection are answered in order, so each connection keeps a queue of
+ * outstanding request correlation ids; the head of the queue is completed when a
+ * terminator frame is received. An aggregated reply that exceeds the frame or size limit
+ * cannot be completed without unbounded memory, so the connection is closed instead.
+ */
+class MultiFrameReplyInterceptor extends TcpConnectionInterceptorSupport {
+
+	private final Deque<Object> outstanding = new ConcurrentLinkedDeque<>();
+
+	private final boolean aggregate;
+
+	private final byte[] terminator;
+
+	private final byte[] delimiter;
+
+	private final int maxFrames;
+
+	private final int maxSize;
+
+	private ByteArrayOutputStream aggregated;
+
+	private int frames;
+
+	private int sequence;
+
+	MultiFrameReplyInterceptor(boolean aggregate, byte[] terminator, byte[] delimiter, int maxFrames, int maxSize) {
+		this.aggregate = aggregate;
+		this.terminator = terminator;
+		this.delimiter = delimiter;
+		this.maxFrames = maxFrames;
+		this.maxSize = maxSize;
+	}
+
+	@Override
+	public void send(Message<?> message) throws Exception {
+		Object correlationId = message.getHeaders().get(MessageHeaders.CORRELATION_ID);
+		if (correlationId == null) {
+			correlationId = message.getHeaders().getId();
+		}
+		this.outstanding.add(correlationId);
+		try {
+			super.send(message);
+		}
+		catch (Exception e) {
+			this.outstanding.removeLastOccurrence(correlationId);
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean onMessage(Message<?> message) {
+		Object correlationId = this.outstanding.peek();
+		if (correlationId == null || !(message.getPayload() instanceof byte[])) {
+			return super.onMessage(message);
+		}
+		byte[] frame = (byte[]) message.getPayload();
+		if (Arrays.equals(frame, this.terminator)) {
+			this.outstanding.poll();
+			this.sequence = 0;
+			if (this.aggregate) {
+				byte[] reply = this.aggregated == null ? new byte[0] : this.aggregated.toByteArray();
+				this.aggregated = null;
+				this.frames = 0;
+				return super.onMessage(MessageBuilder.withPayload(reply)
+						.copyHeaders(message.getHeaders())
+						.setCorrelationId(correlationId)
+						.build());
+			}
+			return true;
+		}
+		if (this.aggregate) {
+			int size = this.aggregated == null ? 0 : this.aggregated.size() + this.delimiter.length;
+			if (++this.frames > this.maxFrames || size + (long) frame.length > this.maxSize) {
+				this.logger.error("Reply for " + correlationId + " exceeds " + this.maxFrames + " frames or "
+						+ this.maxSize + " bytes; closing " + getConnectionId());
+				this.aggregated = null;
+				this.frames = 0;
+				this.outstanding.clear();
+				close();
+				return false;
+			}
+			if (this.aggregated == null) {
+				this.aggregated = new ByteArrayOutputStream();
+			}
+			else {
+				this.aggregated.write(this.delimiter, 0, this.delimiter.length);
+			}
+			this.aggregated.write(frame, 0, frame.length);
+			return true;
+		}
+		return super.onMessage(MessageBuilder.fromMessage(message)
+				.setCorrelationId(correlationId)
+				.setSequenceNumber(++this.sequence)
+				.build());
+	}
+
+}
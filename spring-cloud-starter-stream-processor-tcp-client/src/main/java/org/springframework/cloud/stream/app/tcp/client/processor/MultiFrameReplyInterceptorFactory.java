@@ -0,0 +1,62 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp.client.processor;
+
+import org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorFactory;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorSupport;
+import org.springframework.util.Assert;
+
+/**
+ * Creates a {@link MultiFrameReplyInterceptor} for each connection.
+ */
+class MultiFrameReplyInterceptorFactory implements TcpConnectionInterceptorFactory {
+
+	private final ReplyMode replyMode;
+
+	private final byte[] terminator;
+
+	private final byte[] delimiter;
+
+	private int maxFrames = Integer.MAX_VALUE;
+
+	private int maxSize = Integer.MAX_VALUE;
+
+	MultiFrameReplyInterceptorFactory(ReplyMode replyMode, byte[] terminator, byte[] delimiter) {
+		Assert.isTrue(replyMode != ReplyMode.SINGLE, "Single-frame replies need no interceptor");
+		this.replyMode = replyMode;
+		this.terminator = terminator;
+		this.delimiter = delimiter;
+	}
+
+	/**
+	 * Limit the aggregated replies; a connection whose reply exceeds either limit is closed.
+	 * @param maxFrames the maximum number of frames in a reply.
+	 * @param maxSize the maximum size of a reply, in bytes, including delimiters.
+	 */
+	void setMaxAggregate(int maxFrames, int maxSize) {
+		Assert.isTrue(maxFrames > 0 && maxSize > 0, "The limits must be positive");
+		this.maxFrames = maxFrames;
+		this.maxSize = maxSize;
+	}
+
+	@Override
+	public TcpConnectionInterceptorSupport getInterceptor() {
+		return new MultiFrameReplyInterceptor(this.replyMode == ReplyMode.AGGREGATE, this.terminator, this.delimiter,
+				this.maxFrames, this.maxSize);
+	}
+
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp.client.processor;
+
+/**
+ * How the frames received from the server map to replies.
+ * <ul>
+ * <li>SINGLE: each frame is an independent reply</li>
+ * <li>STREAM: a reply is a sequence of frames ending with a terminator frame; each frame is
+ * emitted as it arrives, with correlation and sequence headers</li>
+ * <li>AGGREGATE: as STREAM, but the frames are joined and emitted as a single message when
+ * the terminator arrives</li>
+ * </ul>
+ */
+public enum ReplyMode {
+	SINGLE, STREAM, AGGREGATE;
+}
@@ -16,21 +16,52 @@
 
 package org.springframework.cloud.stream.app.tcp.client.processor;
 
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.cloud.stream.app.tcp.BackoffConnectionManager;
+import org.springframework.cloud.stream.app.tcp.ConnectionExecutor;
 import org.springframework.cloud.stream.app.tcp.EncoderDecoderFactoryBean;
+import org.springframework.cloud.stream.app.tcp.Encoding;
+import org.springframework.cloud.stream.app.tcp.HostNameResolver;
+import org.springframework.cloud.stream.app.tcp.HostNameTcpMessageMapper;
+import org.springframework.cloud.stream.app.tcp.InterceptorChains;
+import org.springframework.cloud.stream.app.tcp.MemoryBudgetInterceptorFactory;
+import org.springframework.cloud.stream.app.tcp.StringEncodingSerializer;
 import org.springframework.cloud.stream.app.tcp.TcpConnectionFactoryProperties;
 import org.springframework.cloud.stream.messaging.Processor;
 import org.springframework.context.annotation.Bean;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.integration.aggregator.AggregatingMessageHandler;
+import org.springframework.integration.aggregator.MessageCountReleaseStrategy;
 import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.ExecutorChannel;
+import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.integration.handler.BridgeHandler;
 import org.springframework.integration.ip.config.TcpConnectionFactoryFactoryBean;
 import org.springframework.integration.ip.tcp.TcpReceivingChannelAdapter;
 import org.springframework.integration.ip.tcp.TcpSendingMessageHandler;
 import org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorFactory;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorFactoryChain;
 import org.springframework.integration.ip.tcp.connection.TcpMessageMapper;
 import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
 
 /**
  * A processor application that acts as a TCP client.
@@ -44,6 +75,10 @@ import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerial
 @EnableConfigurationProperties({TcpClientProcessorProperties.class, TcpConnectionFactoryProperties.class})
 public class TcpClientProcessorConfiguration {
 
+	private static final String REQUEST_CHANNEL = "tcpClientRequests";
+
+	private static final String REPLY_CHANNEL = "tcpClientReplies";
+
 	@Autowired
 	private Processor channels;
 
@@ -58,14 +93,70 @@ public class TcpClientProcessorConfiguration {
 			@Qualifier("tcpClientConnectionFactory") AbstractConnectionFactory connectionFactory) {
 		TcpReceivingChannelAdapter adapter = new TcpReceivingChannelAdapter();
 		adapter.setConnectionFactory(connectionFactory);
-		adapter.setClientMode(true);
-		adapter.setRetryInterval(this.properties.getRetryInterval());
-		adapter.setOutputChannel(this.channels.output());
+		adapter.setOutputChannelName(REPLY_CHANNEL);
 		return adapter;
 	}
 
 	@Bean
-	@ServiceActivator(inputChannel= Processor.INPUT)
+	public BackoffConnectionManager tcpClientConnectionManager(
+			@Qualifier("tcpClientConnectionFactory") AbstractConnectionFactory connectionFactory,
+			@Qualifier(IntegrationContextUtils.TASK_SCHEDULER_BEAN_NAME) TaskScheduler taskScheduler,
+			ObjectProvider<MeterRegistry> meterRegistry) {
+		BackoffConnectionManager connectionManager = new BackoffConnectionManager(connectionFactory, taskScheduler);
+		connectionManager.setInitialInterval(this.properties.getRetryInitialInterval());
+		connectionManager.setMaxInterval(this.properties.getRetryInterval());
+		connectionManager.setMultiplier(this.properties.getRetryMultiplier());
+		connectionManager.setJitter(this.properties.getRetryJitter());
+		connectionManager.setResetInterval(this.properties.getRetryResetInterval());
+		meterRegistry.ifAvailable(connectionManager::setMeterRegistry);
+		return connectionManager;
+	}
+
+	@Bean
+	@ServiceActivator(inputChannel = Processor.INPUT)
+	public MessageHandler tcpClientRequestHandler() {
+		if (this.properties.getBatchSize() > 1) {
+			Charset charset = Charset.forName(this.properties.getCharset());
+			AggregatingMessageHandler aggregator = new AggregatingMessageHandler(
+					new BatchAggregatingMessageGroupProcessor(batchDelimiter(), charset));
+			aggregator.setCorrelationStrategy(message -> Boolean.TRUE);
+			aggregator.setReleaseStrategy(new MessageCountReleaseStrategy(this.properties.getBatchSize()));
+			// measured from the first message of the batch, not from the last one
+			aggregator.setGroupTimeoutExpression(new SpelExpressionParser().parseExpression(
+					"T(Math).max(1, timestamp + " + this.properties.getBatchTimeout()
+							+ " - T(System).currentTimeMillis())"));
+			aggregator.setSendPartialResultOnExpiry(true);
+			aggregator.setExpireGroupsUponCompletion(true);
+			aggregator.setOutputChannelName(REQUEST_CHANNEL);
+			return aggregator;
+		}
+		BridgeHandler bridge = new BridgeHandler();
+		bridge.setOutputChannelName(REQUEST_CHANNEL);
+		return bridge;
+	}
+
+	@Bean(name = REPLY_CHANNEL)
+	public MessageChannel tcpClientReplies(
+			@Qualifier("tcpClientConnectionExecutor") ConnectionExecutor connectionExecutor) {
+		Executor dispatchExecutor = connectionExecutor.getDispatchExecutor();
+		return dispatchExecutor != null ? new ExecutorChannel(dispatchExecutor) : new DirectChannel();
+	}
+
+	@Bean
+	@ServiceActivator(inputChannel = REPLY_CHANNEL)
+	public MessageHandler tcpClientReplyHandler() {
+		if (this.properties.getBatchSize() > 1) {
+			BatchReplySplitter splitter = new BatchReplySplitter(batchDelimiter());
+			splitter.setOutputChannel(this.channels.output());
+			return splitter;
+		}
+		BridgeHandler bridge = new BridgeHandler();
+		bridge.setOutputChannel(this.channels.output());
+		return bridge;
+	}
+
+	@Bean
+	@ServiceActivator(inputChannel = REQUEST_CHANNEL)
 	public TcpSendingMessageHandler sendingMessageHandler(
 			@Qualifier("tcpClientConnectionFactory") AbstractConnectionFactory connectionFactory) {
 		TcpSendingMessageHandler sendingMessageHandler = new TcpSendingMessageHandler();
@@ -77,34 +168,104 @@ public class TcpClientProcessorConfiguration {
 	public TcpConnectionFactoryFactoryBean tcpClientConnectionFactory(
 			@Qualifier("tcpClientEncoder") AbstractByteArraySerializer encoder,
 			@Qualifier("tcpClientMapper") TcpMessageMapper mapper,
-			@Qualifier("tcpClientDecoder") AbstractByteArraySerializer decoder) throws Exception {
+			@Qualifier("tcpClientDecoder") AbstractByteArraySerializer decoder,
+			@Qualifier("tcpClientInterceptors") TcpConnectionInterceptorFactoryChain interceptors,
+			@Qualifier("tcpClientConnectionExecutor") ConnectionExecutor connectionExecutor) throws Exception {
 		TcpConnectionFactoryFactoryBean factoryBean = new TcpConnectionFactoryFactoryBean();
 		factoryBean.setType("client");
 		factoryBean.setHost(this.properties.getHost());
 		factoryBean.setPort(this.tcpConnectionProperties.getPort());
 		factoryBean.setUsingNio(this.tcpConnectionProperties.isNio());
 		factoryBean.setUsingDirectBuffers(this.tcpConnectionProperties.isUseDirectBuffers());
-		factoryBean.setLookupHost(this.tcpConnectionProperties.isReverseLookup());
-		factoryBean.setSerializer(encoder);
+		factoryBean.setLookupHost(this.tcpConnectionProperties.isReverseLookup()
+				&& this.tcpConnectionProperties.getReverseLookupCacheTtl() == 0);
+		if (this.properties.isDirectStringEncoding()) {
+			factoryBean.setSerializer(new StringEncodingSerializer(encoder, this.properties.getEncoder(),
+					Charset.forName(this.properties.getCharset())));
+		}
+		else {
+			factoryBean.setSerializer(encoder);
+		}
 		factoryBean.setDeserializer(decoder);
 		factoryBean.setSoTimeout(this.tcpConnectionProperties.getSocketTimeout());
+		factoryBean.setSoTcpNoDelay(this.tcpConnectionProperties.isNoDelay());
 		factoryBean.setMapper(mapper);
 		factoryBean.setSingleUse(Boolean.FALSE);
+		factoryBean.setInterceptorFactoryChain(interceptors);
+		if (connectionExecutor.getExecutor() != null) {
+			factoryBean.setTaskExecutor(connectionExecutor.getExecutor());
+		}
 		return factoryBean;
 	}
 
+	@Bean
+	public ConnectionExecutor tcpClientConnectionExecutor(ObjectProvider<MeterRegistry> meterRegistry) {
+		ConnectionExecutor connectionExecutor = new ConnectionExecutor(this.tcpConnectionProperties);
+		meterRegistry.ifAvailable(connectionExecutor::setMeterRegistry);
+		return connectionExecutor;
+	}
+
+	@Bean
+	public MemoryBudgetInterceptorFactory tcpClientMemoryBudget(ObjectProvider<MeterRegistry> meterRegistry) {
+		MemoryBudgetInterceptorFactory memoryBudget = new MemoryBudgetInterceptorFactory(
+				this.tcpConnectionProperties.getMemoryBudget(), this.tcpConnectionProperties.getMemoryPolicy(),
+				this.properties.getBufferSize());
+		if (this.tcpConnectionProperties.getMemoryBudget() > 0) {
+			meterRegistry.ifAvailable(memoryBudget::setMeterRegistry);
+		}
+		return memoryBudget;
+	}
+
+	@Bean
+	public TcpConnectionInterceptorFactoryChain tcpClientInterceptors(
+			@Qualifier(IntegrationContextUtils.TASK_SCHEDULER_BEAN_NAME) TaskScheduler taskScheduler,
+			@Qualifier("tcpClientMemoryBudget") MemoryBudgetInterceptorFactory memoryBudget) {
+		List<TcpConnectionInterceptorFactory> interceptors = new ArrayList<>();
+		if (this.properties.getReplyMode() != ReplyMode.SINGLE) {
+			MultiFrameReplyInterceptorFactory multiFrameReplies = new MultiFrameReplyInterceptorFactory(
+					this.properties.getReplyMode(),
+					this.properties.getReplyTerminator().getBytes(Charset.forName(this.properties.getCharset())),
+					batchDelimiter());
+			multiFrameReplies.setMaxAggregate(this.properties.getReplyMaxFrames(), this.properties.getReplyMaxSize());
+			interceptors.add(multiFrameReplies);
+		}
+		if (this.properties.getBatchSize() > 1 && this.properties.getReplyMode() != ReplyMode.STREAM) {
+			interceptors.add(BatchReplyInterceptor::new);
+		}
+		return InterceptorChains.clientChain(this.tcpConnectionProperties, this.properties.getCharset(), taskScheduler,
+				true, memoryBudget, interceptors.toArray(new TcpConnectionInterceptorFactory[0]));
+	}
+
 	@Bean
 	public EncoderDecoderFactoryBean tcpClientEncoder() {
+		Assert.isTrue(this.properties.getEncoder() != Encoding.AUTO, "'tcp.encoder' cannot be AUTO");
 		return new EncoderDecoderFactoryBean(this.properties.getEncoder());
 	}
 
 	@Bean
-	public TcpMessageMapper tcpClientMapper() {
-		TcpMessageMapper mapper = new TcpMessageMapper();
+	public TcpMessageMapper tcpClientMapper(
+			@Qualifier("tcpClientHostNameResolver") HostNameResolver hostNameResolver) {
+		HostNameTcpMessageMapper mapper = new HostNameTcpMessageMapper();
 		mapper.setCharset(this.properties.getCharset());
+		mapper.setStringToBytes(!this.properties.isDirectStringEncoding());
+		if (this.properties.isPassthrough()) {
+			mapper.setContentType(new MimeType(MimeTypeUtils.APPLICATION_OCTET_STREAM,
+					Charset.forName(this.properties.getCharset())).toString());
+			mapper.setAddContentTypeHeader(true);
+		}
+		if (hostNameResolver.isEnabled()) {
+			mapper.setHostNameResolver(hostNameResolver);
+		}
 		return mapper;
 	}
 
+	@Bean
+	public HostNameResolver tcpClientHostNameResolver() {
+		return new HostNameResolver(this.tcpConnectionProperties.isReverseLookup()
+				? this.tcpConnectionProperties.getReverseLookupCacheTtl()
+				: 0, this.tcpConnectionProperties.getReverseLookupNegativeCacheTtl());
+	}
+
 	@Bean
 	public EncoderDecoderFactoryBean tcpClientDecoder() {
 		EncoderDecoderFactoryBean factoryBean = new EncoderDecoderFactoryBean(this.properties.getDecoder());
@@ -112,4 +273,8 @@ public class TcpClientProcessorConfiguration {
 		return factoryBean;
 	}
 
+	private byte[] batchDelimiter() {
+		return this.properties.getBatchDelimiter().getBytes(Charset.forName(this.properties.getCharset()));
+	}
+
 }
@@ -17,6 +17,7 @@
 package org.springframework.cloud.stream.app.tcp.client.processor;
 
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.cloud.stream.app.tcp.Encoding;
@@ -60,10 +61,79 @@ public class TcpClientProcessorProperties {
 	private String charset = "UTF-8";
 
 	/**
-	 * Retry interval (in milliseconds) to check the connection and reconnect.
+	 * The maximum interval (in milliseconds) between attempts to reconnect; the first attempt is immediate.
 	 */
 	private long retryInterval = 60000;
 
+	/**
+	 * The interval (in milliseconds) before the second attempt to reconnect.
+	 */
+	private long retryInitialInterval = 100;
+
+	/**
+	 * The factor by which the reconnect interval grows after each failed attempt.
+	 */
+	private double retryMultiplier = 2.0;
+
+	/**
+	 * The fraction (0 to 1) of each reconnect interval that is randomized.
+	 */
+	private double retryJitter = 0.5;
+
+	/**
+	 * The time (in milliseconds) a connection must stay open before the reconnect interval is reset; a connection
+	 * that closes sooner counts as a failed attempt.
+	 */
+	private long retryResetInterval = 10000;
+
+	/**
+	 * The maximum number of messages sent to the server as a single batch; 1 disables batching.
+	 */
+	private int batchSize = 1;
+
+	/**
+	 * The time (ms) to wait for a batch to fill before sending a partial batch.
+	 */
+	private long batchTimeout = 100;
+
+	/**
+	 * The delimiter separating records within a batched request and its reply, and the frames
+	 * of an aggregated multi-frame reply.
+	 */
+	private String batchDelimiter = "\u001e";
+
+	/**
+	 * How the frames received from the server map to replies.
+	 */
+	private ReplyMode replyMode = ReplyMode.SINGLE;
+
+	/**
+	 * The frame content that ends a multi-frame reply.
+	 */
+	private String replyTerminator = "";
+
+	/**
+	 * The maximum number of frames in an aggregated reply; a server sending more has its connection closed.
+	 */
+	private int replyMaxFrames = 1000;
+
+	/**
+	 * The maximum size (bytes) of an aggregated reply; a server sending more has its connection closed.
+	 */
+	private int replyMaxSize = 1024 * 1024;
+
+	/**
+	 * Whether to encode String payloads directly into a reusable buffer that also holds the framing, rather than
+	 * converting them to a new byte array for each message.
+	 */
+	private boolean directStringEncoding = false;
+
+	/**
+	 * Whether to add a contentType header of application/octet-stream, with the charset as a parameter, to each
+	 * message, so that the byte[] payload passes through the binder unchanged and consumers decode it only if needed.
+	 */
+	private boolean passthrough = false;
+
 	@NotNull
 	public Encoding getDecoder() {
 		return this.decoder;
@@ -116,4 +186,113 @@ public class TcpClientProcessorProperties {
 		this.retryInterval = retryInterval;
 	}
 
+	public long getRetryInitialInterval() {
+		return this.retryInitialInterval;
+	}
+
+	public void setRetryInitialInterval(long retryInitialInterval) {
+		this.retryInitialInterval = retryInitialInterval;
+	}
+
+	public double getRetryMultiplier() {
+		return this.retryMultiplier;
+	}
+
+	public void setRetryMultiplier(double retryMultiplier) {
+		this.retryMultiplier = retryMultiplier;
+	}
+
+	public double getRetryJitter() {
+		return this.retryJitter;
+	}
+
+	public void setRetryJitter(double retryJitter) {
+		this.retryJitter = retryJitter;
+	}
+
+	public long getRetryResetInterval() {
+		return this.retryResetInterval;
+	}
+
+	public void setRetryResetInterval(long retryResetInterval) {
+		this.retryResetInterval = retryResetInterval;
+	}
+
+	public int getBatchSize() {
+		return this.batchSize;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public long getBatchTimeout() {
+		return this.batchTimeout;
+	}
+
+	public void setBatchTimeout(long batchTimeout) {
+		this.batchTimeout = batchTimeout;
+	}
+
+	@NotNull
+	public String getBatchDelimiter() {
+		return this.batchDelimiter;
+	}
+
+	public void setBatchDelimiter(String batchDelimiter) {
+		this.batchDelimiter = batchDelimiter;
+	}
+
+	@NotNull
+	public ReplyMode getReplyMode() {
+		return this.replyMode;
+	}
+
+	public void setReplyMode(ReplyMode replyMode) {
+		this.replyMode = replyMode;
+	}
+
+	@NotNull
+	public String getReplyTerminator() {
+		return this.replyTerminator;
+	}
+
+	public void setReplyTerminator(String replyTerminator) {
+		this.replyTerminator = replyTerminator;
+	}
+
+	@Positive
+	public int getReplyMaxFrames() {
+		return this.replyMaxFrames;
+	}
+
+	public void setReplyMaxFrames(int replyMaxFrames) {
+		this.replyMaxFrames = replyMaxFrames;
+	}
+
+	@Positive
+	public int getReplyMaxSize() {
+		return this.replyMaxSize;
+	}
+
+	public void setReplyMaxSize(int replyMaxSize) {
+		this.replyMaxSize = replyMaxSize;
+	}
+
+	public boolean isDirectStringEncoding() {
+		return this.directStringEncoding;
+	}
+
+	public void setDirectStringEncoding(boolean directStringEncoding) {
+		this.directStringEncoding = directStringEncoding;
+	}
+
+	public boolean isPassthrough() {
+		return this.passthrough;
+	}
+
+	public void setPassthrough(boolean passthrough) {
+		this.passthrough = passthrough;
+	}
+
 }
@@ -17,17 +17,25 @@
 package org.springframework.cloud.stream.app.tcp.client.processor;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.springframework.cloud.stream.test.matcher.MessageQueueMatcher.receivesPayloadThat;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ServerSocketFactory;
 
@@ -40,12 +48,18 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.cloud.stream.messaging.Processor;
 import org.springframework.cloud.stream.test.binder.MessageCollector;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
 import org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionCloseEvent;
 import org.springframework.integration.ip.tcp.connection.TcpNioClientConnectionFactory;
 import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
 import org.springframework.integration.ip.tcp.serializer.ByteArrayCrLfSerializer;
@@ -55,6 +69,7 @@ import org.springframework.integration.ip.tcp.serializer.ByteArrayRawSerializer;
 import org.springframework.integration.ip.tcp.serializer.ByteArraySingleTerminatorSerializer;
 import org.springframework.integration.ip.tcp.serializer.ByteArrayStxEtxSerializer;
 import org.springframework.integration.ip.tcp.serializer.SoftEndOfStreamException;
+import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.test.util.TestUtils;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.support.GenericMessage;
@@ -198,6 +213,213 @@ public abstract class TcpClientTests {
 
 	}
 
+	@TestPropertySource(properties = { "tcp.batchSize = 2", "tcp.batchTimeout = 10000" })
+	public static class BatchingTests extends TcpClientTests {
+
+		@Test
+		public void test() throws Exception {
+			server.setEncoder(new ByteArrayCrLfSerializer());
+			server.setDecoder(new ByteArrayCrLfSerializer());
+			server.setPrefix("");
+			server.setSuffix("");
+			assertTrue(channels.input().send(new GenericMessage<>("foo")));
+			assertTrue(channels.input().send(new GenericMessage<>("bar".getBytes())));
+			assertThat(this.messageCollector.forChannel(channels.output()), receivesPayloadThat(is("foo".getBytes())));
+			assertThat(this.messageCollector.forChannel(channels.output()),
+					receivesPayloadThat(is("bar-received".getBytes())));
+			server.serverSocket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.batchSize = 2", "tcp.batchTimeout = 10000" })
+	public static class BatchDelimiterTests extends TcpClientTests {
+
+		@Test
+		public void testRecordContainingDelimiterIsDropped() throws Exception {
+			server.setEncoder(new ByteArrayCrLfSerializer());
+			server.setDecoder(new ByteArrayCrLfSerializer());
+			server.setPrefix("");
+			server.setSuffix("");
+			assertTrue(channels.input().send(new GenericMessage<>("foo\u001ebar")));
+			assertTrue(channels.input().send(new GenericMessage<>("baz")));
+			assertThat(this.messageCollector.forChannel(channels.output()),
+					receivesPayloadThat(is("baz-received".getBytes())));
+			server.serverSocket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.batchSize = 2", "tcp.batchTimeout = 10000" })
+	public static class BatchReplyCountTests extends TcpClientTests {
+
+		@Test
+		public void testReplyWithWrongRecordCountIsNotSplit() throws Exception {
+			CountDownLatch replied = new CountDownLatch(1);
+			server.setEncoder(new ByteArrayCrLfSerializer() {
+
+				@Override
+				public void serialize(byte[] bytes, OutputStream outputStream) throws IOException {
+					super.serialize(bytes, outputStream);
+					replied.countDown();
+				}
+
+			});
+			server.setDecoder(new ByteArrayCrLfSerializer());
+			server.setPrefix("");
+			server.setSuffix("\u001ebaz");
+			assertTrue(channels.input().send(new GenericMessage<>("foo")));
+			assertTrue(channels.input().send(new GenericMessage<>("bar")));
+			assertTrue(replied.await(10, TimeUnit.SECONDS));
+			server.setSuffix("");
+			assertTrue(channels.input().send(new GenericMessage<>("qux")));
+			assertTrue(channels.input().send(new GenericMessage<>("quux")));
+			// nothing from the three-record reply to the first batch
+			assertThat(this.messageCollector.forChannel(channels.output()), receivesPayloadThat(is("qux".getBytes())));
+			assertThat(this.messageCollector.forChannel(channels.output()),
+					receivesPayloadThat(is("quux-received".getBytes())));
+			server.serverSocket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.replyMode = STREAM" })
+	public static class StreamingReplyTests extends TcpClientTests {
+
+		@Test
+		public void test() throws Exception {
+			server.setEncoder(new ByteArrayCrLfSerializer());
+			server.setDecoder(new ByteArrayCrLfSerializer());
+			server.setPrefix("");
+			server.setSuffix("\r\n"); // the server's CRLF encoder adds the empty terminator frame
+			assertTrue(channels.input().send(MessageBuilder.withPayload("foo").setCorrelationId("bar").build()));
+			Message<?> reply = this.messageCollector.forChannel(channels.output()).poll(10, TimeUnit.SECONDS);
+			assertNotNull(reply);
+			assertArrayEquals("foo-received".getBytes(), (byte[]) reply.getPayload());
+			assertEquals("bar", reply.getHeaders().get(IntegrationMessageHeaderAccessor.CORRELATION_ID));
+			assertEquals(Integer.valueOf(1), reply.getHeaders().get(IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER));
+			server.serverSocket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.replyMode = AGGREGATE" })
+	public static class AggregateReplyTests extends TcpClientTests {
+
+		@Test
+		public void test() throws Exception {
+			server.setEncoder(new ByteArrayCrLfSerializer());
+			server.setDecoder(new ByteArrayCrLfSerializer());
+			server.setPrefix("");
+			server.setSuffix("\r\nbar\r\n"); // a second frame, then the empty terminator frame
+			assertTrue(channels.input().send(MessageBuilder.withPayload("foo").setCorrelationId("baz").build()));
+			Message<?> reply = this.messageCollector.forChannel(channels.output()).poll(10, TimeUnit.SECONDS);
+			assertNotNull(reply);
+			assertArrayEquals("foo-received\u001ebar".getBytes(), (byte[]) reply.getPayload());
+			assertEquals("baz", reply.getHeaders().get(IntegrationMessageHeaderAccessor.CORRELATION_ID));
+			server.serverSocket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.replyMode = AGGREGATE", "tcp.replyMaxFrames = 1" })
+	public static class AggregateReplyLimitTests extends TcpClientTests {
+
+		@Autowired
+		private CloseEvents closeEvents;
+
+		@Test
+		public void test() throws Exception {
+			server.setEncoder(new ByteArrayCrLfSerializer());
+			server.setDecoder(new ByteArrayCrLfSerializer());
+			server.setPrefix("");
+			server.setSuffix("\r\nbar\r\n");
+			assertTrue(channels.input().send(new GenericMessage<>("foo")));
+			assertTrue(this.closeEvents.closed.await(10, TimeUnit.SECONDS));
+			assertNull(this.messageCollector.forChannel(channels.output()).poll(1, TimeUnit.SECONDS));
+			// a reply within the limit is received on the next connection
+			server.setSuffix("\r\n");
+			assertTrue(channels.input().send(new GenericMessage<>("baz")));
+			assertThat(this.messageCollector.forChannel(channels.output()),
+					receivesPayloadThat(is("baz-received".getBytes())));
+			server.serverSocket.close();
+		}
+
+		@TestConfiguration
+		public static class CloseEvents {
+
+			private final CountDownLatch closed = new CountDownLatch(1);
+
+			@EventListener
+			public void closed(TcpConnectionCloseEvent event) {
+				this.closed.countDown();
+			}
+
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.port = ${tcp.client.test.silent.port}", "tcp.heartbeatInterval = 100",
+			"tcp.missedHeartbeats = 2" })
+	public static class HeartbeatTests extends TcpClientTests {
+
+		private static ServerSocket silentServerSocket;
+
+		@BeforeClass
+		public static void startupSilent() throws Exception {
+			silentServerSocket = ServerSocketFactory.getDefault().createServerSocket(0);
+			silentServerSocket.setSoTimeout(10000);
+			System.setProperty("tcp.client.test.silent.port", Integer.toString(silentServerSocket.getLocalPort()));
+		}
+
+		@AfterClass
+		public static void shutDownSilent() throws Exception {
+			silentServerSocket.close();
+		}
+
+		@Test
+		public void testSilentServerIsClosed() throws Exception {
+			Socket socket = silentServerSocket.accept();
+			socket.setSoTimeout(10000);
+			ByteArrayCrLfSerializer deserializer = new ByteArrayCrLfSerializer();
+			assertEquals("HEARTBEAT", new String(deserializer.deserialize(socket.getInputStream())));
+			try {
+				while (true) {
+					deserializer.deserialize(socket.getInputStream());
+				}
+			}
+			catch (SoftEndOfStreamException e) {
+				// closed by the processor after two missed heartbeats
+			}
+			socket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.taskExecutor = testReaderExecutor" })
+	public static class TaskExecutorTests extends TcpClientTests {
+
+		@Autowired
+		@Qualifier("testReaderExecutor")
+		private Executor readerExecutor;
+
+		@Test
+		public void test() throws Exception {
+			assertSame(this.readerExecutor, TestUtils.getPropertyValue(this.connectionFactory, "taskExecutor"));
+			doTest(new ByteArrayCrLfSerializer(), "foo", "", "\r\n");
+		}
+
+		@TestConfiguration
+		public static class ExecutorConfiguration {
+
+			@Bean(destroyMethod = "shutdown")
+			public ExecutorService testReaderExecutor() {
+				return Executors.newCachedThreadPool();
+			}
+
+		}
+
+	}
 
 	/*
 	 * Sends a message and asserts it arrives as expected on the other side using
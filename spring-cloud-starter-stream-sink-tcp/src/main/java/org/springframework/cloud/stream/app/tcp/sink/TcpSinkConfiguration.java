@@ -16,20 +16,34 @@
 
 package org.springframework.cloud.stream.app.tcp.sink;
 
+import java.nio.charset.Charset;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.cloud.stream.app.tcp.ConnectionExecutor;
 import org.springframework.cloud.stream.app.tcp.EncoderDecoderFactoryBean;
+import org.springframework.cloud.stream.app.tcp.Encoding;
+import org.springframework.cloud.stream.app.tcp.InterceptorChains;
+import org.springframework.cloud.stream.app.tcp.MemoryBudgetInterceptorFactory;
+import org.springframework.cloud.stream.app.tcp.StringEncodingSerializer;
 import org.springframework.cloud.stream.app.tcp.TcpConnectionFactoryProperties;
 import org.springframework.cloud.stream.messaging.Sink;
 import org.springframework.context.annotation.Bean;
 import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.integration.ip.config.TcpConnectionFactoryFactoryBean;
 import org.springframework.integration.ip.tcp.TcpSendingMessageHandler;
 import org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorFactoryChain;
 import org.springframework.integration.ip.tcp.connection.TcpMessageMapper;
 import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
 
 /**
  * A sink application that sends data over TCP.
@@ -59,23 +73,63 @@ public class TcpSinkConfiguration {
 	@Bean
 	public TcpConnectionFactoryFactoryBean tcpSinkConnectionFactory(
 			@Qualifier("tcpSinkEncoder") AbstractByteArraySerializer encoder,
-			@Qualifier("tcpSinkMapper") TcpMessageMapper mapper) throws Exception {
+			@Qualifier("tcpSinkMapper") TcpMessageMapper mapper,
+			@Qualifier("tcpSinkInterceptors") TcpConnectionInterceptorFactoryChain interceptors,
+			@Qualifier("tcpSinkConnectionExecutor") ConnectionExecutor connectionExecutor) throws Exception {
 		TcpConnectionFactoryFactoryBean factoryBean = new TcpConnectionFactoryFactoryBean();
 		factoryBean.setType("client");
 		factoryBean.setHost(this.properties.getHost());
 		factoryBean.setPort(this.tcpConnectionProperties.getPort());
 		factoryBean.setUsingNio(this.tcpConnectionProperties.isNio());
 		factoryBean.setUsingDirectBuffers(this.tcpConnectionProperties.isUseDirectBuffers());
-		factoryBean.setLookupHost(this.tcpConnectionProperties.isReverseLookup());
-		factoryBean.setSerializer(encoder);
+		factoryBean.setLookupHost(this.tcpConnectionProperties.isReverseLookup()
+				&& this.tcpConnectionProperties.getReverseLookupCacheTtl() == 0);
+		if (this.properties.isDirectStringEncoding()) {
+			factoryBean.setSerializer(new StringEncodingSerializer(encoder, this.properties.getEncoder(),
+					Charset.forName(this.properties.getCharset())));
+		}
+		else {
+			factoryBean.setSerializer(encoder);
+		}
 		factoryBean.setSoTimeout(this.tcpConnectionProperties.getSocketTimeout());
+		factoryBean.setSoTcpNoDelay(this.tcpConnectionProperties.isNoDelay());
 		factoryBean.setMapper(mapper);
 		factoryBean.setSingleUse(this.properties.isClose());
+		factoryBean.setInterceptorFactoryChain(interceptors);
+		if (connectionExecutor.getExecutor() != null) {
+			factoryBean.setTaskExecutor(connectionExecutor.getExecutor());
+		}
 		return factoryBean;
 	}
 
+	@Bean
+	public ConnectionExecutor tcpSinkConnectionExecutor(ObjectProvider<MeterRegistry> meterRegistry) {
+		ConnectionExecutor connectionExecutor = new ConnectionExecutor(this.tcpConnectionProperties);
+		meterRegistry.ifAvailable(connectionExecutor::setMeterRegistry);
+		return connectionExecutor;
+	}
+
+	@Bean
+	public MemoryBudgetInterceptorFactory tcpSinkMemoryBudget(ObjectProvider<MeterRegistry> meterRegistry) {
+		MemoryBudgetInterceptorFactory memoryBudget = new MemoryBudgetInterceptorFactory(
+				this.tcpConnectionProperties.getMemoryBudget(), this.tcpConnectionProperties.getMemoryPolicy(), 0);
+		if (this.tcpConnectionProperties.getMemoryBudget() > 0) {
+			meterRegistry.ifAvailable(memoryBudget::setMeterRegistry);
+		}
+		return memoryBudget;
+	}
+
+	@Bean
+	public TcpConnectionInterceptorFactoryChain tcpSinkInterceptors(
+			@Qualifier(IntegrationContextUtils.TASK_SCHEDULER_BEAN_NAME) TaskScheduler taskScheduler,
+			@Qualifier("tcpSinkMemoryBudget") MemoryBudgetInterceptorFactory memoryBudget) {
+		return InterceptorChains.clientChain(this.tcpConnectionProperties, this.properties.getCharset(), taskScheduler,
+				false, memoryBudget);
+	}
+
 	@Bean
 	public EncoderDecoderFactoryBean tcpSinkEncoder() {
+		Assert.isTrue(this.properties.getEncoder() != Encoding.AUTO, "'tcp.encoder' cannot be AUTO");
 		return new EncoderDecoderFactoryBean(this.properties.getEncoder());
 	}
 
@@ -83,6 +137,7 @@ public class TcpSinkConfiguration {
 	public TcpMessageMapper tcpSinkMapper() {
 		TcpMessageMapper mapper = new TcpMessageMapper();
 		mapper.setCharset(this.properties.getCharset());
+		mapper.setStringToBytes(!this.properties.isDirectStringEncoding());
 		return mapper;
 	}
 
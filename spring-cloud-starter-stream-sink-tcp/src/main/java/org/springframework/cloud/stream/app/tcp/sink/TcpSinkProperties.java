@@ -52,6 +52,12 @@ public class TcpSinkProperties {
 	 */
 	private boolean close;
 
+	/**
+	 * Whether to encode String payloads directly into a reusable buffer that also holds the framing, rather than
+	 * converting them to a new byte array for each message.
+	 */
+	private boolean directStringEncoding = false;
+
 	@NotNull
 	public String getHost() {
 		return host;
@@ -87,4 +93,12 @@ public class TcpSinkProperties {
 		this.close = close;
 	}
 
+	public boolean isDirectStringEncoding() {
+		return this.directStringEncoding;
+	}
+
+	public void setDirectStringEncoding(boolean directStringEncoding) {
+		this.directStringEncoding = directStringEncoding;
+	}
+
 }
@@ -18,13 +18,16 @@ package org.springframework.cloud.stream.app.tcp.sink;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -41,11 +44,15 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cloud.stream.app.tcp.StringEncodingSerializer;
 import org.springframework.cloud.stream.messaging.Sink;
 import org.springframework.cloud.stream.test.binder.MessageCollector;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
 import org.springframework.integration.ip.tcp.connection.AbstractClientConnectionFactory;
 import org.springframework.integration.ip.tcp.connection.TcpNetClientConnectionFactory;
 import org.springframework.integration.ip.tcp.connection.TcpNioClientConnectionFactory;
@@ -211,6 +218,60 @@ public abstract class TcpSinkTests {
 
 	}
 
+	@TestPropertySource(properties = { "tcp.encoder = L2", "tcp.directStringEncoding = true" })
+	public static class DirectStringEncodingTests extends TcpSinkTests {
+
+		@Test
+		public void test() throws Exception {
+			assertThat(TestUtils.getPropertyValue(this.connectionFactory, "serializer"),
+					Matchers.instanceOf(StringEncodingSerializer.class));
+			doTest(new ByteArrayLengthHeaderSerializer(2));
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.heartbeatInterval = 100", "tcp.missedHeartbeats = 1" })
+	public static class HeartbeatTests extends TcpSinkTests {
+
+		@Test
+		public void testSilentServerKeepsConnection() throws Exception {
+			server.setDecoder(new ByteArrayCrLfSerializer());
+			assertTrue(channels.input().send(new GenericMessage<>("foo")));
+			assertEquals("foo", server.queue.poll(10, TimeUnit.SECONDS));
+			List<String> connections = this.connectionFactory.getOpenConnectionIds();
+			assertEquals(1, connections.size());
+			assertEquals("HEARTBEAT", server.queue.poll(10, TimeUnit.SECONDS));
+			Thread.sleep(500);
+			assertEquals(connections, this.connectionFactory.getOpenConnectionIds());
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.taskExecutor = testReaderExecutor" })
+	public static class TaskExecutorTests extends TcpSinkTests {
+
+		@Autowired
+		@Qualifier("testReaderExecutor")
+		private Executor readerExecutor;
+
+		@Test
+		public void test() throws Exception {
+			assertSame(this.readerExecutor, TestUtils.getPropertyValue(this.connectionFactory, "taskExecutor"));
+			doTest(new ByteArrayCrLfSerializer());
+		}
+
+		@TestConfiguration
+		public static class ExecutorConfiguration {
+
+			@Bean(destroyMethod = "shutdown")
+			public ExecutorService testReaderExecutor() {
+				return Executors.newCachedThreadPool();
+			}
+
+		}
+
+	}
+
 	/*
 	 * Sends two messages and asserts they arrive as expected on the other side using
 	 * the supplied decoder.
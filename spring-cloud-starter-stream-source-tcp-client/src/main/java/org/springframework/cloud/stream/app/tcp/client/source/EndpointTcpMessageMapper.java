@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp.client.source;
+
+import java.util.Collections;
+import java.util.Map;
+
+import io.micrometer.core.instrument.Counter;
+
+import org.springframework.cloud.stream.app.tcp.LeanTcpMessageMapper;
+import org.springframework.integration.ip.tcp.connection.TcpConnection;
+
+/**
+ * A {@link LeanTcpMessageMapper} that tags each message with the endpoint it was received
+ * from and, optionally, counts them.
+ */
+class EndpointTcpMessageMapper extends LeanTcpMessageMapper {
+
+	/**
+	 * The header containing the endpoint ({@code host:port}) a message was received from.
+	 */
+	static final String ENDPOINT = "tcp_endpoint";
+
+	private final Map<String, String> headers;
+
+	private final Counter counter;
+
+	EndpointTcpMessageMapper(String endpoint, Counter counter) {
+		this.headers = Collections.singletonMap(ENDPOINT, endpoint);
+		this.counter = counter;
+	}
+
+	@Override
+	protected Map<String, ?> supplyCustomHeaders(TcpConnection connection) {
+		if (this.counter != null) {
+			this.counter.increment();
+		}
+		return this.headers;
+	}
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp.client.source;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cloud.stream.app.tcp.BackoffConnectionManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.integration.ip.config.TcpConnectionFactoryFactoryBean;
+import org.springframework.integration.ip.tcp.TcpReceivingChannelAdapter;
+import org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionCloseEvent;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Maintains a client connection, with its {@link BackoffConnectionManager}, and a receiving
+ * adapter for each additional endpoint, all sending to the same channel as the primary
+ * adapter. The connection factories share a single thread pool (the configured connection
+ * executor, if any), rather than each creating its own, and are not registered as beans
+ * so that the primary connection factory remains the only {@link AbstractConnectionFactory}
+ * in the context.
+ */
+class MultiEndpointReceiver implements SmartLifecycle, BeanFactoryAware, ApplicationEventPublisherAware,
+		InitializingBean, DisposableBean, ApplicationListener<TcpConnectionCloseEvent> {
+
+	private final Map<String, TcpConnectionFactoryFactoryBean> connectionFactories;
+
+	private final String outputChannelName;
+
+	private final Function<AbstractConnectionFactory, BackoffConnectionManager> connectionManagerFactory;
+
+	private final List<TcpReceivingChannelAdapter> adapters = new ArrayList<>();
+
+	private final List<BackoffConnectionManager> connectionManagers = new ArrayList<>();
+
+	private final Executor taskExecutor;
+
+	private final ExecutorService ownedTaskExecutor;
+
+	private BeanFactory beanFactory;
+
+	private ApplicationEventPublisher applicationEventPublisher;
+
+	private volatile boolean running;
+
+	MultiEndpointReceiver(Map<String, TcpConnectionFactoryFactoryBean> connectionFactories, String outputChannelName,
+			Executor taskExecutor, Function<AbstractConnectionFactory, BackoffConnectionManager> connectionManagerFactory) {
+		this.connectionFactories = connectionFactories;
+		this.outputChannelName = outputChannelName;
+		this.connectionManagerFactory = connectionManagerFactory;
+		if (taskExecutor != null) {
+			this.taskExecutor = taskExecutor;
+			this.ownedTaskExecutor = null;
+		}
+		else {
+			this.ownedTaskExecutor =
+					Executors.newCachedThreadPool(new CustomizableThreadFactory("tcp-client-endpoint-"));
+			this.taskExecutor = this.ownedTaskExecutor;
+		}
+	}
+
+	@Override
+	public void setBeanFactory(BeanFactory beanFactory) {
+		this.beanFactory = beanFactory;
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
+		this.applicationEventPublisher = applicationEventPublisher;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		for (Map.Entry<String, TcpConnectionFactoryFactoryBean> entry : this.connectionFactories.entrySet()) {
+			TcpConnectionFactoryFactoryBean factoryBean = entry.getValue();
+			factoryBean.setBeanFactory(this.beanFactory);
+			factoryBean.setApplicationEventPublisher(this.applicationEventPublisher);
+			factoryBean.setTaskExecutor(this.taskExecutor);
+			factoryBean.afterPropertiesSet();
+			AbstractConnectionFactory connectionFactory = factoryBean.getObject();
+			connectionFactory.setBeanName("tcpClientConnectionFactory." + entry.getKey());
+			TcpReceivingChannelAdapter adapter = new TcpReceivingChannelAdapter();
+			adapter.setConnectionFactory(connectionFactory);
+			adapter.setOutputChannelName(this.outputChannelName);
+			adapter.setBeanName("adapter." + entry.getKey());
+			adapter.setBeanFactory(this.beanFactory);
+			adapter.afterPropertiesSet();
+			this.adapters.add(adapter);
+			this.connectionManagers.add(this.connectionManagerFactory.apply(connectionFactory));
+		}
+	}
+
+	@Override
+	public void start() {
+		for (TcpReceivingChannelAdapter adapter : this.adapters) {
+			adapter.start();
+		}
+		for (BackoffConnectionManager connectionManager : this.connectionManagers) {
+			connectionManager.start();
+		}
+		this.running = true;
+	}
+
+	@Override
+	public void stop() {
+		for (BackoffConnectionManager connectionManager : this.connectionManagers) {
+			connectionManager.stop();
+		}
+		for (TcpReceivingChannelAdapter adapter : this.adapters) {
+			adapter.stop();
+		}
+		this.running = false;
+	}
+
+	@Override
+	public void onApplicationEvent(TcpConnectionCloseEvent event) {
+		for (BackoffConnectionManager connectionManager : this.connectionManagers) {
+			connectionManager.onApplicationEvent(event);
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return true;
+	}
+
+	@Override
+	public void stop(Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	@Override
+	public int getPhase() {
+		return Integer.MAX_VALUE / 2;
+	}
+
+	@Override
+	public void destroy() {
+		if (this.ownedTaskExecutor != null) {
+			this.ownedTaskExecutor.shutdownNow();
+		}
+	}
+
+}
@@ -16,19 +16,47 @@
 
 package org.springframework.cloud.stream.app.tcp.client.source;
 
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.cloud.stream.app.tcp.BackoffConnectionManager;
+import org.springframework.cloud.stream.app.tcp.ConnectionExecutor;
 import org.springframework.cloud.stream.app.tcp.EncoderDecoderFactoryBean;
+import org.springframework.cloud.stream.app.tcp.HostNameResolver;
+import org.springframework.cloud.stream.app.tcp.InterceptorChains;
+import org.springframework.cloud.stream.app.tcp.LeanTcpMessageMapper;
+import org.springframework.cloud.stream.app.tcp.MemoryBudgetInterceptorFactory;
 import org.springframework.cloud.stream.app.tcp.TcpConnectionFactoryProperties;
+import org.springframework.cloud.stream.app.tcp.TcpConnectionFactoryProperties.RejectionPolicy;
 import org.springframework.cloud.stream.messaging.Source;
 import org.springframework.context.annotation.Bean;
+import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.ExecutorChannel;
+import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.integration.handler.BridgeHandler;
 import org.springframework.integration.ip.config.TcpConnectionFactoryFactoryBean;
 import org.springframework.integration.ip.tcp.TcpReceivingChannelAdapter;
 import org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorFactoryChain;
 import org.springframework.integration.ip.tcp.connection.TcpMessageMapper;
 import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
 
 /**
  * A source application that acts as a TCP client.
@@ -41,6 +69,8 @@ import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerial
 @EnableConfigurationProperties({ TcpClientSourceProperties.class, TcpConnectionFactoryProperties.class })
 public class TcpClientSourceConfiguration {
 
+	private static final String DISPATCH_CHANNEL = "tcpClientDispatch";
+
 	@Autowired
 	private TcpClientSourceProperties properties;
 
@@ -52,41 +82,195 @@ public class TcpClientSourceConfiguration {
 			@Qualifier("tcpClientConnectionFactory") AbstractConnectionFactory connectionFactory) {
 		TcpReceivingChannelAdapter adapter = new TcpReceivingChannelAdapter();
 		adapter.setConnectionFactory(connectionFactory);
-		adapter.setClientMode(true);
-		adapter.setRetryInterval(this.properties.getRetryInterval());
-		adapter.setOutputChannelName(Source.OUTPUT);
+		adapter.setOutputChannelName(DISPATCH_CHANNEL);
 		return adapter;
 	}
 
+	@Bean(name = DISPATCH_CHANNEL)
+	public MessageChannel tcpClientDispatch(
+			@Qualifier("tcpClientConnectionExecutor") ConnectionExecutor connectionExecutor,
+			@Qualifier("tcpClientMemoryBudget") MemoryBudgetInterceptorFactory memoryBudget) {
+		Executor dispatchExecutor = connectionExecutor.getDispatchExecutor();
+		if (dispatchExecutor == null) {
+			return new DirectChannel();
+		}
+		ExecutorChannel channel = new ExecutorChannel(dispatchExecutor);
+		if (this.tcpConnectionProperties.getMemoryBudget() > 0) {
+			RejectionPolicy rejectionPolicy = this.tcpConnectionProperties.getDispatchPool().getRejectionPolicy();
+			Assert.state(rejectionPolicy == RejectionPolicy.ABORT || rejectionPolicy == RejectionPolicy.CALLER_RUNS,
+					"A memory budget requires the dispatch pool to abort or run rejected tasks, not discard them");
+			channel.addInterceptor(memoryBudget.getDispatchInterceptor());
+		}
+		return channel;
+	}
+
+	@Bean
+	@ServiceActivator(inputChannel = DISPATCH_CHANNEL)
+	public MessageHandler tcpClientDispatcher() {
+		BridgeHandler bridge = new BridgeHandler();
+		bridge.setOutputChannelName(Source.OUTPUT);
+		return bridge;
+	}
+
+	@Bean
+	public BackoffConnectionManager tcpClientConnectionManager(
+			@Qualifier("tcpClientConnectionFactory") AbstractConnectionFactory connectionFactory,
+			@Qualifier(IntegrationContextUtils.TASK_SCHEDULER_BEAN_NAME) TaskScheduler taskScheduler,
+			ObjectProvider<MeterRegistry> meterRegistry) {
+		return connectionManager(connectionFactory, taskScheduler, meterRegistry);
+	}
+
 	@Bean
 	public TcpConnectionFactoryFactoryBean tcpClientConnectionFactory(
 			@Qualifier("tcpClientMapper") TcpMessageMapper mapper,
-			@Qualifier("tcpClientDecoder") AbstractByteArraySerializer decoder) throws Exception {
+			@Qualifier("tcpClientDecoder") AbstractByteArraySerializer decoder,
+			@Qualifier("tcpClientInterceptors") TcpConnectionInterceptorFactoryChain interceptors,
+			@Qualifier("tcpClientConnectionExecutor") ConnectionExecutor connectionExecutor) throws Exception {
+		return connectionFactory(this.properties.getHost(), this.tcpConnectionProperties.getPort(), mapper, decoder,
+				interceptors, connectionExecutor);
+	}
+
+	@Bean
+	public MultiEndpointReceiver tcpClientAdditionalEndpoints(
+			@Qualifier("tcpClientDecoder") AbstractByteArraySerializer decoder,
+			@Qualifier("tcpClientInterceptors") TcpConnectionInterceptorFactoryChain interceptors,
+			@Qualifier("tcpClientConnectionExecutor") ConnectionExecutor connectionExecutor,
+			@Qualifier(IntegrationContextUtils.TASK_SCHEDULER_BEAN_NAME) TaskScheduler taskScheduler,
+			@Qualifier("tcpClientHostNameResolver") HostNameResolver hostNameResolver,
+			ObjectProvider<MeterRegistry> meterRegistry) {
+		Map<String, TcpConnectionFactoryFactoryBean> connectionFactories = new LinkedHashMap<>();
+		for (String endpoint : this.properties.getAdditionalEndpoints()) {
+			int colon = endpoint.lastIndexOf(':');
+			Assert.isTrue(colon > 0 && colon < endpoint.length() - 1,
+					"Additional endpoints must be in the form 'host:port', not: " + endpoint);
+			connectionFactories.put(endpoint, connectionFactory(endpoint.substring(0, colon),
+					Integer.parseInt(endpoint.substring(colon + 1)), mapper(endpoint, hostNameResolver, meterRegistry), decoder,
+					interceptors, connectionExecutor));
+		}
+		return new MultiEndpointReceiver(connectionFactories, DISPATCH_CHANNEL, connectionExecutor.getExecutor(),
+				connectionFactory -> connectionManager(connectionFactory, taskScheduler, meterRegistry));
+	}
+
+	@Bean
+	public ConnectionExecutor tcpClientConnectionExecutor(ObjectProvider<MeterRegistry> meterRegistry) {
+		ConnectionExecutor connectionExecutor = new ConnectionExecutor(this.tcpConnectionProperties);
+		meterRegistry.ifAvailable(connectionExecutor::setMeterRegistry);
+		return connectionExecutor;
+	}
+
+	@Bean
+	public TcpMessageMapper tcpClientMapper(
+			@Qualifier("tcpClientHostNameResolver") HostNameResolver hostNameResolver,
+			ObjectProvider<MeterRegistry> meterRegistry) {
+		if (this.properties.getAdditionalEndpoints().isEmpty()) {
+			return mapper(hostNameResolver);
+		}
+		return mapper(this.properties.getHost() + ":" + this.tcpConnectionProperties.getPort(), hostNameResolver,
+				meterRegistry);
+	}
+
+	@Bean
+	public HostNameResolver tcpClientHostNameResolver() {
+		return new HostNameResolver(this.tcpConnectionProperties.isReverseLookup()
+				? this.tcpConnectionProperties.getReverseLookupCacheTtl()
+				: 0, this.tcpConnectionProperties.getReverseLookupNegativeCacheTtl());
+	}
+
+	@Bean
+	public EncoderDecoderFactoryBean tcpClientDecoder() {
+		EncoderDecoderFactoryBean factoryBean = new EncoderDecoderFactoryBean(this.properties.getDecoder());
+		factoryBean.setMaxMessageSize(this.properties.getBufferSize());
+		return factoryBean;
+	}
+
+	@Bean
+	public MemoryBudgetInterceptorFactory tcpClientMemoryBudget(ObjectProvider<MeterRegistry> meterRegistry) {
+		MemoryBudgetInterceptorFactory memoryBudget = new MemoryBudgetInterceptorFactory(
+				this.tcpConnectionProperties.getMemoryBudget(), this.tcpConnectionProperties.getMemoryPolicy(),
+				this.properties.getBufferSize());
+		if (this.tcpConnectionProperties.getMemoryBudget() > 0) {
+			meterRegistry.ifAvailable(memoryBudget::setMeterRegistry);
+		}
+		return memoryBudget;
+	}
+
+	@Bean
+	public TcpConnectionInterceptorFactoryChain tcpClientInterceptors(
+			@Qualifier(IntegrationContextUtils.TASK_SCHEDULER_BEAN_NAME) TaskScheduler taskScheduler,
+			@Qualifier("tcpClientMemoryBudget") MemoryBudgetInterceptorFactory memoryBudget) {
+		return InterceptorChains.clientChain(this.tcpConnectionProperties, this.properties.getCharset(), taskScheduler,
+				true, memoryBudget);
+	}
+
+	private TcpConnectionFactoryFactoryBean connectionFactory(String host, int port, TcpMessageMapper mapper,
+			AbstractByteArraySerializer decoder, TcpConnectionInterceptorFactoryChain interceptors,
+			ConnectionExecutor connectionExecutor) {
 		TcpConnectionFactoryFactoryBean factoryBean = new TcpConnectionFactoryFactoryBean();
 		factoryBean.setType("client");
-		factoryBean.setHost(this.properties.getHost());
-		factoryBean.setPort(this.tcpConnectionProperties.getPort());
+		factoryBean.setHost(host);
+		factoryBean.setPort(port);
 		factoryBean.setUsingNio(this.tcpConnectionProperties.isNio());
 		factoryBean.setUsingDirectBuffers(this.tcpConnectionProperties.isUseDirectBuffers());
-		factoryBean.setLookupHost(this.tcpConnectionProperties.isReverseLookup());
+		factoryBean.setLookupHost(this.tcpConnectionProperties.isReverseLookup()
+				&& this.tcpConnectionProperties.getReverseLookupCacheTtl() == 0);
 		factoryBean.setDeserializer(decoder);
 		factoryBean.setSoTimeout(this.tcpConnectionProperties.getSocketTimeout());
+		factoryBean.setSoTcpNoDelay(this.tcpConnectionProperties.isNoDelay());
 		factoryBean.setMapper(mapper);
+		factoryBean.setInterceptorFactoryChain(interceptors);
+		if (connectionExecutor.getExecutor() != null) {
+			factoryBean.setTaskExecutor(connectionExecutor.getExecutor());
+		}
 		return factoryBean;
 	}
 
-	@Bean
-	public TcpMessageMapper tcpClientMapper() {
-		TcpMessageMapper mapper = new TcpMessageMapper();
+	private BackoffConnectionManager connectionManager(AbstractConnectionFactory connectionFactory,
+			TaskScheduler taskScheduler, ObjectProvider<MeterRegistry> meterRegistry) {
+		BackoffConnectionManager connectionManager = new BackoffConnectionManager(connectionFactory, taskScheduler);
+		connectionManager.setInitialInterval(this.properties.getRetryInitialInterval());
+		connectionManager.setMaxInterval(this.properties.getRetryInterval());
+		connectionManager.setMultiplier(this.properties.getRetryMultiplier());
+		connectionManager.setJitter(this.properties.getRetryJitter());
+		connectionManager.setResetInterval(this.properties.getRetryResetInterval());
+		meterRegistry.ifAvailable(connectionManager::setMeterRegistry);
+		return connectionManager;
+	}
+
+	private TcpMessageMapper mapper(HostNameResolver hostNameResolver) {
+		LeanTcpMessageMapper mapper = new LeanTcpMessageMapper();
 		mapper.setCharset(this.properties.getCharset());
+		if (hostNameResolver.isEnabled()) {
+			mapper.setHostNameResolver(hostNameResolver);
+		}
+		mapper.setHeaderNames(this.properties.getMessageHeaders());
+		addContentTypeHeader(mapper);
 		return mapper;
 	}
 
-	@Bean
-	public EncoderDecoderFactoryBean tcpClientDecoder() {
-		EncoderDecoderFactoryBean factoryBean = new EncoderDecoderFactoryBean(this.properties.getDecoder());
-		factoryBean.setMaxMessageSize(this.properties.getBufferSize());
-		return factoryBean;
+	private TcpMessageMapper mapper(String endpoint, HostNameResolver hostNameResolver,
+			ObjectProvider<MeterRegistry> meterRegistry) {
+		MeterRegistry registry = meterRegistry.getIfAvailable();
+		Counter counter = registry == null ? null
+				: Counter.builder("tcp.client.messages")
+						.description("Messages received from a TCP client source endpoint")
+						.tag("endpoint", endpoint)
+						.register(registry);
+		EndpointTcpMessageMapper mapper = new EndpointTcpMessageMapper(endpoint, counter);
+		mapper.setCharset(this.properties.getCharset());
+		if (hostNameResolver.isEnabled()) {
+			mapper.setHostNameResolver(hostNameResolver);
+		}
+		mapper.setHeaderNames(this.properties.getMessageHeaders());
+		addContentTypeHeader(mapper);
+		return mapper;
+	}
+
+	private void addContentTypeHeader(LeanTcpMessageMapper mapper) {
+		if (this.properties.isPassthrough()) {
+			mapper.setContentType(new MimeType(MimeTypeUtils.APPLICATION_OCTET_STREAM,
+					Charset.forName(this.properties.getCharset())).toString());
+			mapper.setAddContentTypeHeader(true);
+		}
 	}
 
 }
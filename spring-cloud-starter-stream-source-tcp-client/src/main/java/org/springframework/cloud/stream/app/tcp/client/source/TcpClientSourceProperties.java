@@ -16,6 +16,9 @@
 
 package org.springframework.cloud.stream.app.tcp.client.source;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.validation.constraints.NotNull;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -54,10 +57,48 @@ public class TcpClientSourceProperties {
 	private String charset = "UTF-8";
 
 	/**
-	 * Retry interval (in milliseconds) to check the connection and reconnect.
+	 * The maximum interval (in milliseconds) between attempts to reconnect; the first attempt is immediate.
 	 */
 	private long retryInterval = 60000;
 
+	/**
+	 * The interval (in milliseconds) before the second attempt to reconnect.
+	 */
+	private long retryInitialInterval = 100;
+
+	/**
+	 * The factor by which the reconnect interval grows after each failed attempt.
+	 */
+	private double retryMultiplier = 2.0;
+
+	/**
+	 * The fraction (0 to 1) of each reconnect interval that is randomized.
+	 */
+	private double retryJitter = 0.5;
+
+	/**
+	 * The time (in milliseconds) a connection must stay open before the reconnect interval is reset; a connection
+	 * that closes sooner counts as a failed attempt.
+	 */
+	private long retryResetInterval = 10000;
+
+	/**
+	 * Additional servers (host:port) to connect to; messages from all connections are sent to the output.
+	 */
+	private List<String> additionalEndpoints = new ArrayList<>();
+
+	/**
+	 * The IP headers added to each message, e.g. ip_address,ip_connectionId; by default, all of ip_hostName,
+	 * ip_address, ip_tcp_remotePort, ip_connectionId and ip_localInetAddress.
+	 */
+	private List<String> messageHeaders;
+
+	/**
+	 * Whether to add a contentType header of application/octet-stream, with the charset as a parameter, to each
+	 * message, so that the byte[] payload passes through the binder unchanged and consumers decode it only if needed.
+	 */
+	private boolean passthrough = false;
+
 	@NotNull
 	public String getHost() {
 		return host;
@@ -100,4 +141,61 @@ public class TcpClientSourceProperties {
 		this.retryInterval = retryInterval;
 	}
 
+	public long getRetryInitialInterval() {
+		return this.retryInitialInterval;
+	}
+
+	public void setRetryInitialInterval(long retryInitialInterval) {
+		this.retryInitialInterval = retryInitialInterval;
+	}
+
+	public double getRetryMultiplier() {
+		return this.retryMultiplier;
+	}
+
+	public void setRetryMultiplier(double retryMultiplier) {
+		this.retryMultiplier = retryMultiplier;
+	}
+
+	public double getRetryJitter() {
+		return this.retryJitter;
+	}
+
+	public void setRetryJitter(double retryJitter) {
+		this.retryJitter = retryJitter;
+	}
+
+	public long getRetryResetInterval() {
+		return this.retryResetInterval;
+	}
+
+	public void setRetryResetInterval(long retryResetInterval) {
+		this.retryResetInterval = retryResetInterval;
+	}
+
+	@NotNull
+	public List<String> getAdditionalEndpoints() {
+		return this.additionalEndpoints;
+	}
+
+	public void setAdditionalEndpoints(List<String> additionalEndpoints) {
+		this.additionalEndpoints = additionalEndpoints;
+	}
+
+	public List<String> getMessageHeaders() {
+		return this.messageHeaders;
+	}
+
+	public void setMessageHeaders(List<String> messageHeaders) {
+		this.messageHeaders = messageHeaders;
+	}
+
+	public boolean isPassthrough() {
+		return this.passthrough;
+	}
+
+	public void setPassthrough(boolean passthrough) {
+		this.passthrough = passthrough;
+	}
+
 }
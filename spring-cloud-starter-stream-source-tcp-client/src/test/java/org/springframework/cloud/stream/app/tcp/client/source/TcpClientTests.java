@@ -19,11 +19,19 @@ package org.springframework.cloud.stream.app.tcp.client.source;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import javax.net.ServerSocketFactory;
@@ -35,19 +43,27 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cloud.stream.app.tcp.BackoffConnectionManager;
 import org.springframework.cloud.stream.messaging.Source;
 import org.springframework.cloud.stream.test.binder.MessageCollector;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
+import org.springframework.integration.ip.IpHeaders;
 import org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory;
 import org.springframework.integration.ip.tcp.connection.TcpNioClientConnectionFactory;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayCrLfSerializer;
 import org.springframework.integration.ip.tcp.serializer.ByteArrayLfSerializer;
 import org.springframework.integration.test.util.TestUtils;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
 /**
  * Tests for TcpClient source.
@@ -120,6 +136,175 @@ public abstract class TcpClientTests {
 
 	}
 
+	@TestPropertySource(properties = { "tcp.additionalEndpoints = localhost:${tcp.client.test.additional.port}" })
+	public static class AdditionalEndpointsTests extends TcpClientTests {
+
+		private static ServerSocket additionalServerSocket;
+
+		@BeforeClass
+		public static void startupAdditional() throws Exception {
+			additionalServerSocket = ServerSocketFactory.getDefault().createServerSocket(0);
+			System.setProperty("tcp.client.test.additional.port",
+					Integer.toString(additionalServerSocket.getLocalPort()));
+		}
+
+		@AfterClass
+		public static void shutDownAdditional() throws Exception {
+			additionalServerSocket.close();
+		}
+
+		@Test
+		public void testOutput() throws Exception {
+			serverSocket.accept().getOutputStream().write("Test1\r\n".getBytes());
+			Message<?> message = messageCollector.forChannel(source.output()).poll(5000, TimeUnit.MILLISECONDS);
+			assertNotNull(message);
+			assertEquals("Test1", new String((byte[]) message.getPayload()));
+			assertEquals("localhost:" + serverSocket.getLocalPort(),
+					message.getHeaders().get(EndpointTcpMessageMapper.ENDPOINT));
+			additionalServerSocket.accept().getOutputStream().write("Test2\r\n".getBytes());
+			message = messageCollector.forChannel(source.output()).poll(5000, TimeUnit.MILLISECONDS);
+			assertNotNull(message);
+			assertEquals("Test2", new String((byte[]) message.getPayload()));
+			assertEquals("localhost:" + additionalServerSocket.getLocalPort(),
+					message.getHeaders().get(EndpointTcpMessageMapper.ENDPOINT));
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.heartbeatInterval = 200" })
+	public static class HeartbeatTests extends TcpClientTests {
+
+		@Test
+		public void testHeartbeats() throws Exception {
+			Socket socket = serverSocket.accept();
+			InputStream inputStream = socket.getInputStream();
+			assertEquals("HEARTBEAT", new String(new ByteArrayCrLfSerializer().deserialize(inputStream)));
+			OutputStream outputStream = socket.getOutputStream();
+			outputStream.write("HEARTBEAT\r\nTest1\r\n".getBytes());
+			Message<?> message = messageCollector.forChannel(source.output()).poll(5000, TimeUnit.MILLISECONDS);
+			assertNotNull(message);
+			assertEquals("Test1", new String((byte[]) message.getPayload()));
+			socket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.messageHeaders = ip_connectionId" })
+	public static class MessageHeadersTests extends TcpClientTests {
+
+		@Test
+		public void testHeaders() throws Exception {
+			Socket socket = serverSocket.accept();
+			socket.getOutputStream().write("Test1\r\n".getBytes());
+			Message<?> message = messageCollector.forChannel(source.output()).poll(5000, TimeUnit.MILLISECONDS);
+			assertNotNull(message);
+			assertNotNull(message.getHeaders().get(IpHeaders.CONNECTION_ID));
+			assertFalse(message.getHeaders().containsKey(IpHeaders.HOSTNAME));
+			assertFalse(message.getHeaders().containsKey(IpHeaders.IP_ADDRESS));
+			socket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.passthrough = true", "tcp.charset = ISO-8859-1" })
+	public static class PassthroughTests extends TcpClientTests {
+
+		@Test
+		public void testContentType() throws Exception {
+			Socket socket = serverSocket.accept();
+			socket.getOutputStream().write("Test1\r\n".getBytes());
+			Message<?> message = messageCollector.forChannel(source.output()).poll(5000, TimeUnit.MILLISECONDS);
+			assertNotNull(message);
+			assertThat(message.getPayload(), Matchers.instanceOf(byte[].class));
+			assertEquals("application/octet-stream;charset=ISO-8859-1",
+					message.getHeaders().get(MessageHeaders.CONTENT_TYPE).toString());
+			socket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.port = ${tcp.client.test.backoff.port}", "tcp.retryInitialInterval = 1000",
+			"tcp.retryJitter = 0" })
+	public static class ReconnectBackoffTests extends TcpClientTests {
+
+		private static ServerSocket backoffServerSocket;
+
+		@BeforeClass
+		public static void startupBackoff() throws Exception {
+			backoffServerSocket = ServerSocketFactory.getDefault().createServerSocket(0);
+			backoffServerSocket.setSoTimeout(10000);
+			System.setProperty("tcp.client.test.backoff.port", Integer.toString(backoffServerSocket.getLocalPort()));
+		}
+
+		@AfterClass
+		public static void shutDownBackoff() throws Exception {
+			backoffServerSocket.close();
+		}
+
+		@Test
+		public void testShortLivedConnectionsBackOff() throws Exception {
+			backoffServerSocket.accept().close();
+			long closed = System.currentTimeMillis();
+			backoffServerSocket.accept().close();
+			assertThat(System.currentTimeMillis() - closed, Matchers.greaterThanOrEqualTo(900L));
+			closed = System.currentTimeMillis();
+			Socket socket = backoffServerSocket.accept();
+			assertThat(System.currentTimeMillis() - closed, Matchers.greaterThanOrEqualTo(1900L));
+			socket.close();
+		}
+
+	}
+
+	public static class ReconnectJitterTests extends TcpClientTests {
+
+		@Autowired
+		private BackoffConnectionManager connectionManager;
+
+		@Test
+		public void testDelays() {
+			Set<Long> delays = new HashSet<>();
+			for (int i = 0; i < 100; i++) {
+				long delay = ReflectionTestUtils.invokeMethod(this.connectionManager, "nextDelay", 3);
+				assertThat(delay, Matchers.both(Matchers.greaterThanOrEqualTo(400L)).and(Matchers.lessThanOrEqualTo(800L)));
+				delays.add(delay);
+			}
+			assertThat(delays.size(), Matchers.greaterThan(1));
+			long capped = ReflectionTestUtils.invokeMethod(this.connectionManager, "nextDelay", 30);
+			assertThat(capped, Matchers.both(Matchers.greaterThanOrEqualTo(30000L)).and(Matchers.lessThanOrEqualTo(60000L)));
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.taskExecutor = testReaderExecutor" })
+	public static class TaskExecutorTests extends TcpClientTests {
+
+		@Autowired
+		@Qualifier("testReaderExecutor")
+		private Executor readerExecutor;
+
+		@Test
+		public void test() throws Exception {
+			assertSame(this.readerExecutor, TestUtils.getPropertyValue(this.connectionFactory, "taskExecutor"));
+			Socket socket = serverSocket.accept();
+			socket.getOutputStream().write("Test1\r\n".getBytes());
+			Message<?> message = messageCollector.forChannel(source.output()).poll(5000, TimeUnit.MILLISECONDS);
+			assertNotNull(message);
+			assertEquals("Test1", new String((byte[]) message.getPayload()));
+			socket.close();
+		}
+
+		@TestConfiguration
+		public static class ExecutorConfiguration {
+
+			@Bean(destroyMethod = "shutdown")
+			public ExecutorService testReaderExecutor() {
+				return Executors.newCachedThreadPool();
+			}
+
+		}
+
+	}
+
 	@SpringBootApplication
 	@Import(TcpClientSourceConfiguration.class)
 	public static class TcpClientApplication {
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp.source;
+
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.context.ApplicationListener;
+import org.springframework.integration.ip.tcp.connection.TcpConnection;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionCloseEvent;
+
+/**
+ * Decides whether newly accepted sockets are admitted, based on the total number of open
+ * connections, the number of open connections from the same remote address, and the rate
+ * at which connections are accepted. It is consulted before the connection factory
+ * creates a connection, so a refused socket is closed without a reader thread or decode
+ * buffer ever being allocated for it. Admitted connections are released when their
+ * {@link TcpConnectionCloseEvent} is received.
+ * <p>One controller is shared by all the listeners, so the limits apply to their
+ * connections together: a remote address's connections to every listener count towards
+ * its per-address limit.
+ */
+class AdmissionController implements ApplicationListener<TcpConnectionCloseEvent> {
+
+	private static final Log logger = LogFactory.getLog(AdmissionController.class);
+
+	private final Set<String> admitted = new HashSet<>();
+
+	private final Map<String, Integer> connectionsPerAddress = new HashMap<>();
+
+	private final int maxConnections;
+
+	private final int maxConnectionsPerAddress;
+
+	private final double maxAcceptRate;
+
+	private double acceptTokens;
+
+	private long lastRefill = System.nanoTime();
+
+	private Counter refusedCounter;
+
+	/**
+	 * @param maxConnections the maximum number of open connections; 0 for no limit.
+	 * @param maxConnectionsPerAddress the maximum number of open connections from one
+	 * remote address; 0 for no limit.
+	 * @param maxAcceptRate the maximum number of connections accepted per second, with
+	 * bursts of up to one second's worth; 0 for no limit.
+	 */
+	AdmissionController(int maxConnections, int maxConnectionsPerAddress, double maxAcceptRate) {
+		this.maxConnections = maxConnections;
+		this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+		this.maxAcceptRate = maxAcceptRate;
+		this.acceptTokens = Math.max(1, maxAcceptRate);
+	}
+
+	void setMeterRegistry(MeterRegistry meterRegistry) {
+		this.refusedCounter = Counter.builder("tcp.connections.refused")
+				.description("Connections closed by admission control")
+				.register(meterRegistry);
+	}
+
+	boolean isEnabled() {
+		return this.maxConnections > 0 || this.maxConnectionsPerAddress > 0 || this.maxAcceptRate > 0;
+	}
+
+	/**
+	 * Admit the socket, recording it as open, or refuse it; the caller must close refused
+	 * sockets.
+	 * @param socket the accepted socket.
+	 * @return true if the socket is admitted.
+	 */
+	synchronized boolean admit(Socket socket) {
+		String address = socket.getInetAddress().getHostAddress();
+		String reason = null;
+		if (this.maxAcceptRate > 0 && !acquireAcceptToken()) {
+			reason = "accept rate exceeded";
+		}
+		else if (this.maxConnections > 0 && this.admitted.size() >= this.maxConnections) {
+			reason = "maximum connections reached";
+		}
+		else if (this.maxConnectionsPerAddress > 0
+				&& this.connectionsPerAddress.getOrDefault(address, 0) >= this.maxConnectionsPerAddress) {
+			reason = "maximum connections from " + address + " reached";
+		}
+		if (reason != null) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Refusing connection from " + address + ":" + socket.getPort() + "; " + reason);
+			}
+			if (this.refusedCounter != null) {
+				this.refusedCounter.increment();
+			}
+			return false;
+		}
+		this.admitted.add(key(address, socket.getPort(), socket.getLocalPort()));
+		this.connectionsPerAddress.merge(address, 1, Integer::sum);
+		return true;
+	}
+
+	@Override
+	public synchronized void onApplicationEvent(TcpConnectionCloseEvent event) {
+		TcpConnection connection = (TcpConnection) event.getSource();
+		String address = connection.getHostAddress();
+		if (this.admitted.remove(key(address, connection.getPort(), connection.getSocketInfo().getLocalPort()))) {
+			this.connectionsPerAddress.computeIfPresent(address, (key, count) -> count > 1 ? count - 1 : null);
+		}
+	}
+
+	private static String key(String address, int port, int localPort) {
+		return address + ":" + port + ">" + localPort;
+	}
+
+	private boolean acquireAcceptToken() {
+		long now = System.nanoTime();
+		this.acceptTokens = Math.min(Math.max(1, this.maxAcceptRate),
+				this.acceptTokens + (now - this.lastRefill) * this.maxAcceptRate / 1_000_000_000d);
+		this.lastRefill = now;
+		if (this.acceptTokens >= 1) {
+			this.acceptTokens--;
+			return true;
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp.source;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.integration.ip.tcp.connection.DefaultTcpNioConnectionSupport;
+import org.springframework.integration.ip.tcp.connection.TcpNioConnection;
+
+/**
+ * Consults an {@link AdmissionController} before an NIO server connection factory creates
+ * a connection for an accepted channel. The connection factory cannot abandon a channel
+ * without logging an error, so a refused channel is given a connection that closes it
+ * (with a reset) where the connection would otherwise be announced as open, before
+ * anything is read from it.
+ */
+class AdmissionNioConnectionSupport extends DefaultTcpNioConnectionSupport {
+
+	private final AdmissionController admissionController;
+
+	AdmissionNioConnectionSupport(AdmissionController admissionController) {
+		this.admissionController = admissionController;
+	}
+
+	@Override
+	public TcpNioConnection createNewConnection(SocketChannel socketChannel, boolean server, boolean lookupHost,
+			ApplicationEventPublisher applicationEventPublisher, String connectionFactoryName) throws Exception {
+
+		if (server && !this.admissionController.admit(socketChannel.socket())) {
+			try {
+				socketChannel.socket().setSoLinger(true, 0);
+			}
+			catch (IOException e) {
+				// ignore
+			}
+			return new RefusedConnection(socketChannel, applicationEventPublisher, connectionFactoryName);
+		}
+		return super.createNewConnection(socketChannel, server, lookupHost, applicationEventPublisher,
+				connectionFactoryName);
+	}
+
+	private static final class RefusedConnection extends TcpNioConnection {
+
+		RefusedConnection(SocketChannel socketChannel, ApplicationEventPublisher applicationEventPublisher,
+				String connectionFactoryName) throws Exception {
+			super(socketChannel, true, false, applicationEventPublisher, connectionFactoryName);
+		}
+
+		@Override
+		protected void publishConnectionOpenEvent() {
+			close();
+		}
+
+	}
+
+}
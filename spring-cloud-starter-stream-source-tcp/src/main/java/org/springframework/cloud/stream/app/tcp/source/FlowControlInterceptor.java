@@ -0,0 +1,116 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp.source;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.util.Assert;
+
+/**
+ * Limits the number of messages that have been handed to an executor channel but not yet
+ * handled. When the high-water mark is reached, threads sending to the channel (the
+ * connection readers) block until the number of in-flight messages falls to the low-water
+ * mark. While blocked, the readers stop reading from their sockets, so the TCP receive
+ * windows fill up and the producers are slowed down.
+ */
+class FlowControlInterceptor implements ExecutorChannelInterceptor {
+
+	private static final Log logger = LogFactory.getLog(FlowControlInterceptor.class);
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition resumed = this.lock.newCondition();
+
+	private final int highWaterMark;
+
+	private final int lowWaterMark;
+
+	private int inFlight;
+
+	private boolean paused;
+
+	FlowControlInterceptor(int highWaterMark, int lowWaterMark) {
+		Assert.isTrue(highWaterMark > 0, "'highWaterMark' must be positive");
+		Assert.isTrue(lowWaterMark >= 0 && lowWaterMark < highWaterMark,
+				"'lowWaterMark' must be at least 0 and less than 'highWaterMark'");
+		this.highWaterMark = highWaterMark;
+		this.lowWaterMark = lowWaterMark;
+	}
+
+	@Override
+	public Message<?> preSend(Message<?> message, MessageChannel channel) {
+		this.lock.lock();
+		try {
+			while (this.paused) {
+				this.resumed.await();
+			}
+			if (++this.inFlight >= this.highWaterMark) {
+				this.paused = true;
+				if (logger.isDebugEnabled()) {
+					logger.debug("Pausing reads; " + this.inFlight + " messages in flight");
+				}
+			}
+			return message;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessageDeliveryException(message, "Interrupted while waiting for in-flight messages to drain");
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+		if (!sent || ex != null) {
+			completed();
+		}
+	}
+
+	@Override
+	public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler,
+			Exception ex) {
+		completed();
+	}
+
+	private void completed() {
+		this.lock.lock();
+		try {
+			if (--this.inFlight <= this.lowWaterMark && this.paused) {
+				this.paused = false;
+				this.resumed.signalAll();
+				if (logger.isDebugEnabled()) {
+					logger.debug("Resuming reads; " + this.inFlight + " messages in flight");
+				}
+			}
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+}
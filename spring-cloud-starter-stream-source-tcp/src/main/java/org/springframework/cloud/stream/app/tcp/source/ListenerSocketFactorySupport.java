@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp.source;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import javax.net.ServerSocketFactory;
+import javax.net.SocketFactory;
+
+import org.springframework.integration.ip.tcp.connection.TcpSocketFactorySupport;
+
+/**
+ * Creates the server sockets of blocking server connection factories, optionally with
+ * {@code SO_REUSEPORT} enabled before they are bound and optionally consulting an
+ * {@link AdmissionController} for each accepted socket. Refused sockets are closed
+ * within {@link ServerSocket#accept()}, so the connection factory never sees them.
+ */
+class ListenerSocketFactorySupport implements TcpSocketFactorySupport {
+
+	private final ServerSocketFactory serverSocketFactory = new ListenerServerSocketFactory();
+
+	private final boolean reusePort;
+
+	private final AdmissionController admissionController;
+
+	/**
+	 * @param reusePort true to enable {@code SO_REUSEPORT}.
+	 * @param admissionController the admission controller, or null to admit all sockets.
+	 */
+	ListenerSocketFactorySupport(boolean reusePort, AdmissionController admissionController) {
+		this.reusePort = reusePort;
+		this.admissionController = admissionController;
+	}
+
+	@Override
+	public ServerSocketFactory getServerSocketFactory() {
+		return this.serverSocketFactory;
+	}
+
+	@Override
+	public SocketFactory getSocketFactory() {
+		return SocketFactory.getDefault();
+	}
+
+	private final class ListenerServerSocketFactory extends ServerSocketFactory {
+
+		@Override
+		public ServerSocket createServerSocket() throws IOException {
+			ServerSocket serverSocket = ListenerSocketFactorySupport.this.admissionController == null
+					? new ServerSocket()
+					: new AdmittingServerSocket(ListenerSocketFactorySupport.this.admissionController);
+			if (ListenerSocketFactorySupport.this.reusePort) {
+				ReusePortSocketSupport.enable(serverSocket);
+			}
+			return serverSocket;
+		}
+
+		@Override
+		public ServerSocket createServerSocket(int port) throws IOException {
+			return createServerSocket(port, 50, null);
+		}
+
+		@Override
+		public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+			return createServerSocket(port, backlog, null);
+		}
+
+		@Override
+		public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+			ServerSocket serverSocket = createServerSocket();
+			serverSocket.bind(new InetSocketAddress(address, port), backlog);
+			return serverSocket;
+		}
+
+	}
+
+	private static final class AdmittingServerSocket extends ServerSocket {
+
+		private final AdmissionController admissionController;
+
+		AdmittingServerSocket(AdmissionController admissionController) throws IOException {
+			this.admissionController = admissionController;
+		}
+
+		@Override
+		public Socket accept() throws IOException {
+			while (true) {
+				Socket socket = super.accept();
+				if (this.admissionController.admit(socket)) {
+					return socket;
+				}
+				try {
+					socket.setSoLinger(true, 0);
+					socket.close();
+				}
+				catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+
+	}
+
+}
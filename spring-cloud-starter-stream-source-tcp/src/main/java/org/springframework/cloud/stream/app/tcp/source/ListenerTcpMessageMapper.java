@@ -0,0 +1,47 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp.source;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.springframework.cloud.stream.app.tcp.LeanTcpMessageMapper;
+import org.springframework.integration.ip.tcp.connection.TcpConnection;
+
+/**
+ * A {@link LeanTcpMessageMapper} that tags each message with the id of the listener that
+ * received it.
+ */
+class ListenerTcpMessageMapper extends LeanTcpMessageMapper {
+
+	/**
+	 * The header containing the id of the listener a message was received by.
+	 */
+	static final String LISTENER = "tcp_listener";
+
+	private final Map<String, String> headers;
+
+	ListenerTcpMessageMapper(String listener) {
+		this.headers = Collections.singletonMap(LISTENER, listener);
+	}
+
+	@Override
+	protected Map<String, ?> supplyCustomHeaders(TcpConnection connection) {
+		return this.headers;
+	}
+
+}
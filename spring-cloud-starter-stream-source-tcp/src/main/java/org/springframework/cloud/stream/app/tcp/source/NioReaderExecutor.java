@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp.source;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.integration.util.CompositeExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * The task executor for the NIO server connection factory. The selector thread only
+ * accepts connections and detects readable channels; reading from the sockets is done by
+ * a fixed number of reader threads so that the I/O is spread across cores without
+ * creating a thread per busy connection, and messages are assembled and sent on a
+ * separate pool so that a reader never waits for a slow assembler.
+ * <p>
+ * The assembler pool is deliberately unbounded: an assembler blocks until the reader
+ * threads have delivered the rest of its message, so each connection that is part way
+ * through a message holds one assembler thread. With a bounded pool, the reader that
+ * finds it full would either wait, and no reader would be left to complete the messages
+ * the busy assemblers wait for, or assemble the message itself, and stop reading every
+ * other connection until it is complete. Idle assembler threads are discarded after a
+ * minute; to cap the number of threads, cap the number of connections with
+ * {@code tcp.max-connections}.
+ * <p>
+ * The pools are only created when a connection factory uses NIO.
+ */
+class NioReaderExecutor implements DisposableBean {
+
+	private final int readerThreads;
+
+	private ExecutorService readers;
+
+	private ExecutorService assemblers;
+
+	private CompositeExecutor executor;
+
+	NioReaderExecutor(int readerThreads) {
+		Assert.isTrue(readerThreads > 0, "'readerThreads' must be positive");
+		this.readerThreads = readerThreads;
+	}
+
+	synchronized CompositeExecutor getExecutor() {
+		if (this.executor == null) {
+			this.readers = Executors.newFixedThreadPool(this.readerThreads,
+					new CustomizableThreadFactory("tcp-nio-reader-"));
+			this.assemblers = Executors.newCachedThreadPool(new CustomizableThreadFactory("tcp-nio-assembler-"));
+			this.executor = new CompositeExecutor(this.readers, this.assemblers);
+		}
+		return this.executor;
+	}
+
+	@Override
+	public synchronized void destroy() {
+		if (this.executor != null) {
+			this.readers.shutdownNow();
+			this.assemblers.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp.source;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Provides an executor for an executor channel that runs each message's task on one of a
+ * fixed number of single-threaded lanes, chosen by hashing a key evaluated against the
+ * message (by default, its connection id). Messages with the same key are therefore
+ * handled in the order they were sent, while messages with different keys are handled in
+ * parallel. When a lane's queue is full, the sending thread waits for space rather than
+ * running the task itself, which would break the ordering.
+ * <p>The executor channel wraps the tasks it executes, hiding their messages, so the key is
+ * evaluated by the {@link #getKeyInterceptor() key interceptor} before the message is
+ * dispatched and handed to the executor through the sending thread.
+ * <p>A lane count of 0 creates a disabled executor with no threads.
+ */
+class PartitionedExecutor implements DisposableBean {
+
+	private final ThreadPoolExecutor[] lanes;
+
+	private final Expression keyExpression;
+
+	private final EvaluationContext evaluationContext;
+
+	private final Executor executor = this::execute;
+
+	private final ThreadLocal<Object> key = new ThreadLocal<>();
+
+	/**
+	 * @param lanes the number of lanes; 0 to disable.
+	 * @param queueCapacity the number of tasks each lane queues.
+	 * @param keyExpression the expression evaluated against each message to determine its key.
+	 * @param evaluationContext the evaluation context.
+	 */
+	PartitionedExecutor(int lanes, int queueCapacity, Expression keyExpression, EvaluationContext evaluationContext) {
+		Assert.isTrue(lanes >= 0, "'lanes' cannot be negative");
+		Assert.isTrue(queueCapacity > 0, "'queueCapacity' must be positive");
+		this.keyExpression = keyExpression;
+		this.evaluationContext = evaluationContext;
+		this.lanes = new ThreadPoolExecutor[lanes];
+		for (int i = 0; i < lanes; i++) {
+			this.lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<>(queueCapacity),
+					new CustomizableThreadFactory("tcp-lane-" + i + "-"), PartitionedExecutor::waitForSpace);
+		}
+	}
+
+	/**
+	 * Publish the number of tasks queued for each lane as the {@code tcp.lane.depth} gauge,
+	 * tagged with the {@code lane}.
+	 * @param meterRegistry the registry.
+	 */
+	void setMeterRegistry(MeterRegistry meterRegistry) {
+		for (int i = 0; i < this.lanes.length; i++) {
+			Gauge.builder("tcp.lane.depth", this.lanes[i], lane -> lane.getQueue().size())
+					.description("Messages waiting in a dispatch lane")
+					.tag("lane", Integer.toString(i))
+					.register(meterRegistry);
+		}
+	}
+
+	Executor getExecutor() {
+		return this.executor;
+	}
+
+	/**
+	 * Return the interceptor that evaluates each message's key for the executor; it must be
+	 * the channel's last interceptor, so that the key is evaluated against the message that
+	 * is dispatched.
+	 * @return the interceptor.
+	 */
+	ChannelInterceptor getKeyInterceptor() {
+		return new KeyInterceptor();
+	}
+
+	boolean isEnabled() {
+		return this.lanes.length > 0;
+	}
+
+	@Override
+	public void destroy() {
+		for (ThreadPoolExecutor lane : this.lanes) {
+			lane.shutdownNow();
+		}
+	}
+
+	private void execute(Runnable task) {
+		Object key = this.key.get();
+		int hash = key != null ? key.hashCode() : 0;
+		this.lanes[(hash & Integer.MAX_VALUE) % this.lanes.length].execute(task);
+	}
+
+	private static void waitForSpace(Runnable task, ThreadPoolExecutor lane) {
+		if (lane.isShutdown()) {
+			throw new RejectedExecutionException("The dispatch lane has been shut down");
+		}
+		BlockingQueue<Runnable> queue = lane.getQueue();
+		try {
+			queue.put(task);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RejectedExecutionException("Interrupted while waiting for space in a dispatch lane", e);
+		}
+	}
+
+	private final class KeyInterceptor implements ChannelInterceptor {
+
+		@Override
+		public Message<?> preSend(Message<?> message, MessageChannel channel) {
+			EvaluationContext evaluationContext = PartitionedExecutor.this.evaluationContext;
+			PartitionedExecutor.this.key.set(PartitionedExecutor.this.keyExpression.getValue(evaluationContext, message));
+			return message;
+		}
+
+		@Override
+		public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+			PartitionedExecutor.this.key.remove();
+		}
+
+	}
+
+}
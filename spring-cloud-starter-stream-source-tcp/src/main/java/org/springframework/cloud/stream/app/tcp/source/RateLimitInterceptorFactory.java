@@ -0,0 +1,189 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp.source;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.context.ApplicationListener;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionCloseEvent;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorFactory;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorSupport;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionSupport;
+import org.springframework.messaging.Message;
+
+/**
+ * Limits the rate at which each connection, and all the connections from each remote
+ * address, deliver messages, in messages and bytes per second. A reader that exceeds a
+ * limit sleeps before delivering the message, so it stops reading from its connection and
+ * the producer is slowed down by TCP flow control; nothing is dropped.
+ * <p>The sleep holds the reader thread. With NIO, that is a thread of the capped reader
+ * pool shared by all connections, so as many connections as the pool has threads being
+ * held back at once stop the others from being read.
+ * <p>Must be registered as a bean so that it is notified when connections close.
+ */
+class RateLimitInterceptorFactory implements TcpConnectionInterceptorFactory,
+		ApplicationListener<TcpConnectionCloseEvent> {
+
+	private final Map<String, AddressLimit> addressLimits = new ConcurrentHashMap<>();
+
+	private final Map<String, String> connectionAddresses = new ConcurrentHashMap<>();
+
+	private final TcpSourceProperties.RateLimit connectionRateLimit;
+
+	private final TcpSourceProperties.RateLimit addressRateLimit;
+
+	RateLimitInterceptorFactory(TcpSourceProperties.RateLimit connectionRateLimit,
+			TcpSourceProperties.RateLimit addressRateLimit) {
+		this.connectionRateLimit = connectionRateLimit;
+		this.addressRateLimit = addressRateLimit;
+	}
+
+	boolean isEnabled() {
+		return this.connectionRateLimit.isEnabled() || this.addressRateLimit.isEnabled();
+	}
+
+	@Override
+	public TcpConnectionInterceptorSupport getInterceptor() {
+		return new RateLimitInterceptor();
+	}
+
+	@Override
+	public void onApplicationEvent(TcpConnectionCloseEvent event) {
+		String address = this.connectionAddresses.remove(event.getConnectionId());
+		if (address != null) {
+			this.addressLimits.computeIfPresent(address, (key, limit) -> --limit.connections > 0 ? limit : null);
+		}
+	}
+
+	private AddressLimit addressLimit(TcpConnectionSupport connection) {
+		String address = connection.getHostAddress();
+		this.connectionAddresses.put(connection.getConnectionId(), address);
+		return this.addressLimits.compute(address, (key, limit) -> {
+			AddressLimit addressLimit = limit != null ? limit : new AddressLimit(this.addressRateLimit);
+			addressLimit.connections++;
+			return addressLimit;
+		});
+	}
+
+	/**
+	 * A pair of token buckets, for messages and bytes, each holding up to one second's
+	 * worth of tokens. A message may take a bucket into debt, so messages larger than the
+	 * bytes per second are delayed rather than blocked forever.
+	 */
+	private static class Limit {
+
+		private final double messagesPerSecond;
+
+		private final double bytesPerSecond;
+
+		private double messageTokens;
+
+		private double byteTokens;
+
+		private long lastRefill = System.nanoTime();
+
+		Limit(TcpSourceProperties.RateLimit rateLimit) {
+			this.messagesPerSecond = rateLimit.getMessagesPerSecond();
+			this.bytesPerSecond = rateLimit.getBytesPerSecond();
+			this.messageTokens = this.messagesPerSecond;
+			this.byteTokens = this.bytesPerSecond;
+		}
+
+		/**
+		 * Take the tokens for a message.
+		 * @param bytes the size of the message.
+		 * @return the time (ns) to wait before delivering the message.
+		 */
+		synchronized long reserve(int bytes) {
+			long now = System.nanoTime();
+			double elapsed = (now - this.lastRefill) / 1_000_000_000d;
+			this.lastRefill = now;
+			long delay = 0;
+			if (this.messagesPerSecond > 0) {
+				this.messageTokens = Math.min(this.messagesPerSecond,
+						this.messageTokens + elapsed * this.messagesPerSecond) - 1;
+				delay = delay(this.messageTokens, this.messagesPerSecond);
+			}
+			if (this.bytesPerSecond > 0) {
+				this.byteTokens = Math.min(this.bytesPerSecond,
+						this.byteTokens + elapsed * this.bytesPerSecond) - bytes;
+				delay = Math.max(delay, delay(this.byteTokens, this.bytesPerSecond));
+			}
+			return delay;
+		}
+
+		private static long delay(double tokens, double rate) {
+			return tokens < 0 ? (long) (-tokens / rate * 1_000_000_000d) : 0;
+		}
+
+	}
+
+	private static final class AddressLimit extends Limit {
+
+		private int connections;
+
+		AddressLimit(TcpSourceProperties.RateLimit rateLimit) {
+			super(rateLimit);
+		}
+
+	}
+
+	private final class RateLimitInterceptor extends TcpConnectionInterceptorSupport {
+
+		private Limit connectionLimit;
+
+		private Limit addressLimit;
+
+		@Override
+		public void setTheConnection(TcpConnectionSupport theConnection) {
+			super.setTheConnection(theConnection);
+			if (RateLimitInterceptorFactory.this.connectionRateLimit.isEnabled()) {
+				this.connectionLimit = new Limit(RateLimitInterceptorFactory.this.connectionRateLimit);
+			}
+			if (RateLimitInterceptorFactory.this.addressRateLimit.isEnabled()) {
+				this.addressLimit = addressLimit(theConnection);
+			}
+		}
+
+		@Override
+		public boolean onMessage(Message<?> message) {
+			Object payload = message.getPayload();
+			int bytes = payload instanceof byte[] ? ((byte[]) payload).length : 0;
+			long delay = 0;
+			if (this.connectionLimit != null) {
+				delay = this.connectionLimit.reserve(bytes);
+			}
+			if (this.addressLimit != null) {
+				delay = Math.max(delay, this.addressLimit.reserve(bytes));
+			}
+			if (delay > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(delay);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+			return super.onMessage(message);
+		}
+
+	}
+
+}
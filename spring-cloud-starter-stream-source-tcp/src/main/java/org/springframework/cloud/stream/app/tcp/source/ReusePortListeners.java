@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp.source;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.integration.ip.config.TcpConnectionFactoryFactoryBean;
+import org.springframework.integration.ip.tcp.TcpReceivingChannelAdapter;
+import org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory;
+import org.springframework.integration.ip.tcp.connection.AbstractServerConnectionFactory;
+
+/**
+ * Maintains server connection factories, and their receiving adapters, in addition to the
+ * primary connection factory: either those that listen on the same port as the primary
+ * connection factory using {@code SO_REUSEPORT}, or the additional listeners, each on its
+ * own port and with its own decoder. Each has its own accept thread and all send to the
+ * same channel as the primary adapter. The connection factories are not registered as
+ * beans so that the primary connection factory remains the only
+ * {@link AbstractConnectionFactory} in the context.
+ */
+class ReusePortListeners implements SmartLifecycle, BeanFactoryAware, ApplicationEventPublisherAware,
+		InitializingBean {
+
+	private final Map<String, TcpConnectionFactoryFactoryBean> connectionFactories;
+
+	private final String outputChannelName;
+
+	private final List<TcpReceivingChannelAdapter> adapters = new ArrayList<>();
+
+	private final Map<String, AbstractServerConnectionFactory> listeners = new LinkedHashMap<>();
+
+	private BeanFactory beanFactory;
+
+	private ApplicationEventPublisher applicationEventPublisher;
+
+	private volatile boolean running;
+
+	/**
+	 * @param connectionFactories the connection factories, keyed by listener id.
+	 * @param outputChannelName the channel the adapters send to.
+	 */
+	ReusePortListeners(Map<String, TcpConnectionFactoryFactoryBean> connectionFactories, String outputChannelName) {
+		this.connectionFactories = connectionFactories;
+		this.outputChannelName = outputChannelName;
+	}
+
+	@Override
+	public void setBeanFactory(BeanFactory beanFactory) {
+		this.beanFactory = beanFactory;
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
+		this.applicationEventPublisher = applicationEventPublisher;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		for (Map.Entry<String, TcpConnectionFactoryFactoryBean> entry : this.connectionFactories.entrySet()) {
+			TcpConnectionFactoryFactoryBean factoryBean = entry.getValue();
+			factoryBean.setBeanFactory(this.beanFactory);
+			factoryBean.setApplicationEventPublisher(this.applicationEventPublisher);
+			factoryBean.afterPropertiesSet();
+			AbstractConnectionFactory connectionFactory = factoryBean.getObject();
+			connectionFactory.setBeanName("tcpSourceConnectionFactory." + entry.getKey());
+			this.listeners.put(entry.getKey(), (AbstractServerConnectionFactory) connectionFactory);
+			TcpReceivingChannelAdapter adapter = new TcpReceivingChannelAdapter();
+			adapter.setConnectionFactory(connectionFactory);
+			adapter.setOutputChannelName(this.outputChannelName);
+			adapter.setBeanName("adapter." + entry.getKey());
+			adapter.setBeanFactory(this.beanFactory);
+			adapter.afterPropertiesSet();
+			this.adapters.add(adapter);
+		}
+	}
+
+	/**
+	 * @param listener the listener id.
+	 * @return the listener's connection factory, or null if there is no such listener.
+	 */
+	AbstractServerConnectionFactory getConnectionFactory(String listener) {
+		return this.listeners.get(listener);
+	}
+
+	boolean isListening() {
+		for (AbstractServerConnectionFactory listener : this.listeners.values()) {
+			if (!listener.isListening()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void start() {
+		for (TcpReceivingChannelAdapter adapter : this.adapters) {
+			adapter.start();
+		}
+		this.running = true;
+	}
+
+	@Override
+	public void stop() {
+		for (TcpReceivingChannelAdapter adapter : this.adapters) {
+			adapter.stop();
+		}
+		this.running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return true;
+	}
+
+	@Override
+	public void stop(Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	@Override
+	public int getPhase() {
+		return Integer.MAX_VALUE / 2;
+	}
+
+}
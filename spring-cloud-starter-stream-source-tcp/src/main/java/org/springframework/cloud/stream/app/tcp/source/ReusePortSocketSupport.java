@@ -0,0 +1,101 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp.source;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.net.ServerSocket;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ServerSocketChannel;
+
+import org.springframework.integration.ip.tcp.connection.DefaultTcpSocketSupport;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Enables {@code SO_REUSEPORT} on server sockets before they are bound, so that several
+ * server connection factories can listen on the same port and the kernel distributes new
+ * connections between them. NIO server sockets are configured through their channel by
+ * {@link #postProcessServerSocket(ServerSocket)}; blocking server sockets are created
+ * unbound by {@link ListenerSocketFactorySupport}, which calls {@link #enable(ServerSocket)}.
+ * The {@link UdpReceiver} enables it on its datagram channels with {@link #enable(DatagramChannel)}.
+ * <p>{@code StandardSocketOptions.SO_REUSEPORT} was added in Java 9, so it is looked up
+ * reflectively; creating an instance fails on older runtimes.
+ */
+class ReusePortSocketSupport extends DefaultTcpSocketSupport {
+
+	private static final SocketOption<Boolean> SO_REUSEPORT = reusePortOption();
+
+	private static final Method SERVER_SOCKET_SET_OPTION =
+			ReflectionUtils.findMethod(ServerSocket.class, "setOption", SocketOption.class, Object.class);
+
+	ReusePortSocketSupport() {
+		assertSupported();
+	}
+
+	@Override
+	public void postProcessServerSocket(ServerSocket serverSocket) {
+		super.postProcessServerSocket(serverSocket);
+		ServerSocketChannel channel = serverSocket.getChannel();
+		if (channel != null && !serverSocket.isBound()) {
+			try {
+				channel.setOption(SO_REUSEPORT, Boolean.TRUE);
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Enable {@code SO_REUSEPORT} on an unbound blocking server socket.
+	 * @param serverSocket the server socket.
+	 */
+	static void enable(ServerSocket serverSocket) {
+		assertSupported();
+		ReflectionUtils.invokeMethod(SERVER_SOCKET_SET_OPTION, serverSocket, SO_REUSEPORT, Boolean.TRUE);
+	}
+
+	/**
+	 * Enable {@code SO_REUSEPORT} on an unbound datagram channel.
+	 * @param channel the channel.
+	 * @throws IOException if the option cannot be set.
+	 */
+	static void enable(DatagramChannel channel) throws IOException {
+		assertSupported();
+		channel.setOption(SO_REUSEPORT, Boolean.TRUE);
+	}
+
+	private static void assertSupported() {
+		if (SO_REUSEPORT == null) {
+			throw new IllegalStateException("SO_REUSEPORT requires Java 9 or later");
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static SocketOption<Boolean> reusePortOption() {
+		try {
+			return (SocketOption<Boolean>) StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+		}
+		catch (NoSuchFieldException | IllegalAccessException e) {
+			return null;
+		}
+	}
+
+}
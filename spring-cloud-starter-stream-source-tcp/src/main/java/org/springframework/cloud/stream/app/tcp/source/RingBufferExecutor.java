@@ -0,0 +1,267 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp.source;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Provides an executor that hands tasks from the connection readers to a fixed set of publisher
+ * threads through a pre-allocated, bounded ring. Slots are claimed with compare-and-set on
+ * the ring's head and tail and published through a per-slot sequence number, so neither
+ * readers nor publishers take a lock. Each publisher drains up to a batch of tasks before
+ * checking whether it should back off; an idle publisher spins, then yields, then blocks
+ * until a reader signals that it has added a task, so a quiet ring uses no CPU. Readers
+ * only take the lock to signal when a publisher is blocked. A reader that finds the ring
+ * full spins, yields and parks briefly until a slot is free, so a slow binder stops the
+ * readers rather than growing a queue.
+ * <p>A size of 0 creates a disabled executor with no ring or publisher threads.
+ */
+class RingBufferExecutor implements DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(RingBufferExecutor.class);
+
+	private static final int SPINS = 100;
+
+	private static final int YIELDS = 100;
+
+	private static final long PARK_NANOS = 100_000;
+
+	private final AtomicReferenceArray<Runnable> slots;
+
+	private final AtomicLongArray sequences;
+
+	private final AtomicLong head = new AtomicLong();
+
+	private final AtomicLong tail = new AtomicLong();
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition notEmpty = this.lock.newCondition();
+
+	private final AtomicInteger blockedPublishers = new AtomicInteger();
+
+	private final int mask;
+
+	private final int batchSize;
+
+	private final Thread[] publishers;
+
+	private final Executor executor = this::execute;
+
+	private volatile boolean running = true;
+
+	/**
+	 * @param size the number of slots; must be a power of 2, or 0 to disable.
+	 * @param publishers the number of publisher threads.
+	 * @param batchSize the maximum number of tasks a publisher runs between checks for idleness.
+	 */
+	RingBufferExecutor(int size, int publishers, int batchSize) {
+		Assert.isTrue(size == 0 || (size > 0 && Integer.bitCount(size) == 1), "The ring size must be a power of 2");
+		Assert.isTrue(publishers > 0, "'publishers' must be positive");
+		Assert.isTrue(batchSize > 0, "'batchSize' must be positive");
+		this.slots = new AtomicReferenceArray<>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			this.sequences.set(i, i);
+		}
+		this.mask = size - 1;
+		this.batchSize = batchSize;
+		ThreadFactory threadFactory = new CustomizableThreadFactory("tcp-ring-publisher-");
+		this.publishers = new Thread[size > 0 ? publishers : 0];
+		for (int i = 0; i < this.publishers.length; i++) {
+			this.publishers[i] = threadFactory.newThread(this::publish);
+			this.publishers[i].start();
+		}
+	}
+
+	/**
+	 * Publish the number of tasks waiting in the ring as the {@code tcp.ring.depth} gauge.
+	 * @param meterRegistry the registry.
+	 */
+	void setMeterRegistry(MeterRegistry meterRegistry) {
+		Gauge.builder("tcp.ring.depth", this, RingBufferExecutor::getDepth)
+				.description("Messages waiting in the ring between the connection readers and the binder")
+				.register(meterRegistry);
+	}
+
+	Executor getExecutor() {
+		return this.executor;
+	}
+
+	boolean isEnabled() {
+		return this.publishers.length > 0;
+	}
+
+	int getDepth() {
+		return (int) Math.max(0, this.tail.get() - this.head.get());
+	}
+
+	@Override
+	public void destroy() {
+		this.running = false;
+		for (Thread publisher : this.publishers) {
+			publisher.interrupt();
+		}
+	}
+
+	private void execute(Runnable task) {
+		int idle = 0;
+		while (!offer(task)) {
+			if (!this.running) {
+				throw new IllegalStateException("The ring buffer executor has been shut down");
+			}
+			idle = backOff(idle);
+		}
+		if (this.blockedPublishers.get() > 0) {
+			this.lock.lock();
+			try {
+				this.notEmpty.signal();
+			}
+			finally {
+				this.lock.unlock();
+			}
+		}
+	}
+
+	private boolean offer(Runnable task) {
+		long position = this.tail.get();
+		while (true) {
+			int index = (int) (position & this.mask);
+			long available = this.sequences.get(index) - position;
+			if (available == 0) {
+				if (this.tail.compareAndSet(position, position + 1)) {
+					this.slots.set(index, task);
+					this.sequences.set(index, position + 1);
+					return true;
+				}
+				position = this.tail.get();
+			}
+			else if (available < 0) {
+				return false;
+			}
+			else {
+				position = this.tail.get();
+			}
+		}
+	}
+
+	private Runnable poll() {
+		long position = this.head.get();
+		while (true) {
+			int index = (int) (position & this.mask);
+			long available = this.sequences.get(index) - (position + 1);
+			if (available == 0) {
+				if (this.head.compareAndSet(position, position + 1)) {
+					Runnable task = this.slots.get(index);
+					this.slots.set(index, null);
+					this.sequences.set(index, position + this.mask + 1);
+					return task;
+				}
+				position = this.head.get();
+			}
+			else if (available < 0) {
+				return null;
+			}
+			else {
+				position = this.head.get();
+			}
+		}
+	}
+
+	private void publish() {
+		int idle = 0;
+		while (this.running) {
+			int count = 0;
+			Runnable task;
+			while (count < this.batchSize && (task = poll()) != null) {
+				try {
+					task.run();
+				}
+				catch (RuntimeException e) {
+					logger.error("Failed to publish a message", e);
+				}
+				count++;
+			}
+			if (count > 0) {
+				idle = 0;
+			}
+			else if (idle < SPINS + YIELDS) {
+				idle = backOff(idle);
+			}
+			else {
+				awaitTask();
+				idle = 0;
+			}
+		}
+	}
+
+	/**
+	 * Block until the ring is not empty. The publisher is counted as blocked before it
+	 * checks the ring, and a reader checks the count after adding its task, so either the
+	 * publisher sees the task or the reader signals it.
+	 */
+	private void awaitTask() {
+		this.lock.lock();
+		try {
+			this.blockedPublishers.incrementAndGet();
+			try {
+				while (this.running && getDepth() == 0) {
+					this.notEmpty.await();
+				}
+			}
+			finally {
+				this.blockedPublishers.decrementAndGet();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	private static int backOff(int idle) {
+		if (idle < SPINS) {
+			return idle + 1;
+		}
+		if (idle < SPINS + YIELDS) {
+			Thread.yield();
+			return idle + 1;
+		}
+		LockSupport.parkNanos(PARK_NANOS);
+		return idle;
+	}
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp.source;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.integration.channel.ExecutorChannel;
+import org.springframework.integration.core.MessageSelector;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.util.Assert;
+
+/**
+ * Drops low-priority messages when the channel it intercepts is overloaded, that is, when
+ * the number of messages sent to it but not yet handled reaches a queue depth threshold,
+ * or when the most recently handled message was handled more than a lag threshold after
+ * it was received (and messages are still in flight, so that the lag is re-measured once
+ * the channel drains). The priority of each message is determined by evaluating an expression
+ * against it; while overloaded, messages with a priority below the minimum are dropped,
+ * except for a random sample that is kept.
+ * <p>The interceptor only counts the messages in flight; the decision is made by
+ * {@link #accept(Message)}, in a filter in front of the channel, since a message refused
+ * by a channel interceptor fails the send and is logged as an error by the adapter.
+ * <p>Created even when shedding is not configured, in which case {@link #isEnabled()}
+ * returns false and it must not be used.
+ */
+class SheddingInterceptor implements ExecutorChannelInterceptor, MessageSelector {
+
+	private static final Log logger = LogFactory.getLog(SheddingInterceptor.class);
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final Expression priorityExpression;
+
+	private final EvaluationContext evaluationContext;
+
+	private final int minPriority;
+
+	private final int queueDepth;
+
+	private final long lag;
+
+	private final double sampleRate;
+
+	private final boolean enabled;
+
+	private volatile long lastLag;
+
+	private Counter keptCounter;
+
+	private Counter sampledCounter;
+
+	private Counter droppedCounter;
+
+	SheddingInterceptor(TcpSourceProperties.Shedding shedding, EvaluationContext evaluationContext) {
+		this.enabled = shedding.isEnabled();
+		Assert.isTrue(!this.enabled || shedding.getPriorityExpression() != null,
+				"A priority expression is required for shedding");
+		Assert.isTrue(shedding.getSampleRate() >= 0 && shedding.getSampleRate() <= 1,
+				"The sample rate must be between 0 and 1");
+		this.priorityExpression = shedding.getPriorityExpression();
+		this.evaluationContext = evaluationContext;
+		this.minPriority = shedding.getMinPriority();
+		this.queueDepth = shedding.getQueueDepth();
+		this.lag = shedding.getLag();
+		this.sampleRate = shedding.getSampleRate();
+	}
+
+	boolean isEnabled() {
+		return this.enabled;
+	}
+
+	void setMeterRegistry(MeterRegistry meterRegistry) {
+		this.keptCounter = counter(meterRegistry, "kept");
+		this.sampledCounter = counter(meterRegistry, "sampled");
+		this.droppedCounter = counter(meterRegistry, "dropped");
+	}
+
+	@Override
+	public boolean accept(Message<?> message) {
+		if (overloaded()) {
+			Integer priority = this.priorityExpression.getValue(this.evaluationContext, message, Integer.class);
+			if (priority != null && priority >= this.minPriority) {
+				increment(this.keptCounter);
+			}
+			else if (this.sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < this.sampleRate) {
+				increment(this.sampledCounter);
+			}
+			else {
+				increment(this.droppedCounter);
+				if (logger.isTraceEnabled()) {
+					logger.trace("Dropping message with priority " + priority + ": " + message);
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public Message<?> preSend(Message<?> message, MessageChannel channel) {
+		this.inFlight.incrementAndGet();
+		return message;
+	}
+
+	@Override
+	public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+		if (!(channel instanceof ExecutorChannel) || !sent || ex != null) {
+			completed(message);
+		}
+	}
+
+	@Override
+	public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler,
+			Exception ex) {
+		completed(message);
+	}
+
+	private boolean overloaded() {
+		int depth = this.inFlight.get();
+		return (this.queueDepth > 0 && depth >= this.queueDepth)
+				|| (this.lag > 0 && depth > 0 && this.lastLag >= this.lag);
+	}
+
+	private void completed(Message<?> message) {
+		this.inFlight.decrementAndGet();
+		Long timestamp = message.getHeaders().getTimestamp();
+		if (timestamp != null) {
+			this.lastLag = System.currentTimeMillis() - timestamp;
+		}
+	}
+
+	private static Counter counter(MeterRegistry meterRegistry, String outcome) {
+		return Counter.builder("tcp.shedding")
+				.description("Messages received while the source was overloaded, by outcome")
+				.tag("outcome", outcome)
+				.register(meterRegistry);
+	}
+
+	private static void increment(Counter counter) {
+		if (counter != null) {
+			counter.increment();
+		}
+	}
+
+}
@@ -16,18 +16,47 @@
 
 package org.springframework.cloud.stream.app.tcp.source;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.cloud.stream.app.tcp.ConnectionExecutor;
+import org.springframework.cloud.stream.app.tcp.MemoryBudgetInterceptorFactory;
 import org.springframework.cloud.stream.app.tcp.TcpConnectionFactoryProperties;
+import org.springframework.cloud.stream.app.tcp.TcpConnectionFactoryProperties.RejectionPolicy;
 import org.springframework.cloud.stream.app.tcp.EncoderDecoderFactoryBean;
+import org.springframework.cloud.stream.app.tcp.HostNameResolver;
+import org.springframework.cloud.stream.app.tcp.HostNameTcpMessageMapper;
+import org.springframework.cloud.stream.app.tcp.LeanTcpMessageMapper;
 import org.springframework.cloud.stream.messaging.Source;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
+import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.integration.channel.AbstractMessageChannel;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.ExecutorChannel;
+import org.springframework.integration.expression.ExpressionUtils;
+import org.springframework.integration.filter.MessageFilter;
+import org.springframework.integration.handler.BridgeHandler;
 import org.springframework.integration.ip.config.TcpConnectionFactoryFactoryBean;
 import org.springframework.integration.ip.tcp.TcpReceivingChannelAdapter;
 import org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorFactory;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorFactoryChain;
 import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.util.Assert;
 
 /**
  * A source module that receives data over TCP.
@@ -39,6 +68,12 @@ import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerial
 @EnableConfigurationProperties({TcpSourceProperties.class, TcpConnectionFactoryProperties.class})
 public class TcpSourceConfiguration {
 
+	private static final String DISPATCH_CHANNEL = "tcpSourceDispatch";
+
+	private static final String SHEDDING_CHANNEL = "tcpSourceShedding";
+
+	private static final String PRIMARY_LISTENER = "default";
+
 	@Autowired
 	private TcpSourceProperties properties;
 
@@ -50,28 +85,327 @@ public class TcpSourceConfiguration {
 			@Qualifier("tcpSourceConnectionFactory") AbstractConnectionFactory connectionFactory) {
 		TcpReceivingChannelAdapter adapter = new TcpReceivingChannelAdapter();
 		adapter.setConnectionFactory(connectionFactory);
-		adapter.setOutputChannelName(Source.OUTPUT);
+		adapter.setOutputChannelName(inputChannel());
 		return adapter;
 	}
 
+	@Bean(name = SHEDDING_CHANNEL)
+	public MessageChannel tcpSourceShedding() {
+		return new DirectChannel();
+	}
+
+	@Bean
+	public SheddingInterceptor tcpSourceShedder(ObjectProvider<MeterRegistry> meterRegistry, BeanFactory beanFactory) {
+		SheddingInterceptor shedder = new SheddingInterceptor(this.properties.getShedding(),
+				ExpressionUtils.createStandardEvaluationContext(beanFactory));
+		if (shedder.isEnabled()) {
+			meterRegistry.ifAvailable(shedder::setMeterRegistry);
+		}
+		return shedder;
+	}
+
+	@Bean
+	@ServiceActivator(inputChannel = SHEDDING_CHANNEL)
+	public MessageHandler tcpSourceSheddingFilter(@Qualifier("tcpSourceShedder") SheddingInterceptor shedder) {
+		MessageFilter filter = new MessageFilter(shedder);
+		filter.setOutputChannelName(DISPATCH_CHANNEL);
+		return filter;
+	}
+
+	@Bean(name = DISPATCH_CHANNEL)
+	public MessageChannel tcpSourceDispatch(
+			@Qualifier("tcpSourceConnectionExecutor") ConnectionExecutor connectionExecutor,
+			@Qualifier("tcpSourceRing") RingBufferExecutor ring,
+			@Qualifier("tcpSourceLanes") PartitionedExecutor lanes,
+			@Qualifier("tcpSourceMemoryBudget") MemoryBudgetInterceptorFactory memoryBudget,
+			@Qualifier("tcpSourceShedder") SheddingInterceptor shedder) {
+		Assert.state(!ring.isEnabled() || !lanes.isEnabled(), "A ring buffer and dispatch lanes cannot both be used");
+		Executor dispatchExecutor;
+		if (ring.isEnabled()) {
+			dispatchExecutor = ring.getExecutor();
+		}
+		else if (lanes.isEnabled()) {
+			dispatchExecutor = lanes.getExecutor();
+		}
+		else {
+			dispatchExecutor = connectionExecutor.getDispatchExecutor();
+		}
+		AbstractMessageChannel channel = dispatchExecutor == null
+				? new DirectChannel()
+				: new ExecutorChannel(dispatchExecutor);
+		RejectionPolicy rejectionPolicy = this.tcpConnectionProperties.getDispatchPool().getRejectionPolicy();
+		boolean dropsTasks = !ring.isEnabled() && !lanes.isEnabled() && rejectionPolicy != RejectionPolicy.ABORT
+				&& rejectionPolicy != RejectionPolicy.CALLER_RUNS;
+		if (dispatchExecutor != null && this.tcpConnectionProperties.getMemoryBudget() > 0) {
+			Assert.state(!dropsTasks,
+					"A memory budget requires the dispatch pool to abort or run rejected tasks, not discard them");
+			channel.addInterceptor(memoryBudget.getDispatchInterceptor());
+		}
+		if (shedder.isEnabled()) {
+			channel.addInterceptor(shedder);
+		}
+		if (dispatchExecutor != null && this.properties.getHighWaterMark() > 0) {
+			Assert.state(!dropsTasks,
+					"Flow control requires the dispatch pool to abort or run rejected tasks, not discard them");
+			channel.addInterceptor(new FlowControlInterceptor(this.properties.getHighWaterMark(),
+					this.properties.getLowWaterMark()));
+		}
+		if (lanes.isEnabled()) {
+			channel.addInterceptor(lanes.getKeyInterceptor());
+		}
+		return channel;
+	}
+
+	@Bean
+	@ServiceActivator(inputChannel = DISPATCH_CHANNEL)
+	public MessageHandler tcpSourceDispatcher() {
+		BridgeHandler bridge = new BridgeHandler();
+		bridge.setOutputChannelName(Source.OUTPUT);
+		return bridge;
+	}
+
 	@Bean
 	public TcpConnectionFactoryFactoryBean tcpSourceConnectionFactory(
-			@Qualifier("tcpSourceDecoder") AbstractByteArraySerializer decoder) throws Exception {
-		TcpConnectionFactoryFactoryBean factoryBean = new TcpConnectionFactoryFactoryBean();
-		factoryBean.setType("server");
-		factoryBean.setPort(this.tcpConnectionProperties.getPort());
-		factoryBean.setUsingNio(this.tcpConnectionProperties.isNio());
-		factoryBean.setUsingDirectBuffers(this.tcpConnectionProperties.isUseDirectBuffers());
-		factoryBean.setLookupHost(this.tcpConnectionProperties.isReverseLookup());
-		factoryBean.setDeserializer(decoder);
-		factoryBean.setSoTimeout(this.tcpConnectionProperties.getSocketTimeout());
-		return factoryBean;
+			@Qualifier("tcpSourceDecoder") AbstractByteArraySerializer decoder,
+			@Qualifier("tcpSourceReaderExecutor") NioReaderExecutor readerExecutor,
+			@Qualifier("tcpSourceConnectionExecutor") ConnectionExecutor connectionExecutor,
+			@Qualifier("tcpSourceInterceptors") TcpConnectionInterceptorFactoryChain interceptors,
+			@Qualifier("tcpSourceAdmissionController") AdmissionController admissionController,
+			@Qualifier("tcpSourceHostNameResolver") HostNameResolver hostNameResolver) throws Exception {
+		return connectionFactory(PRIMARY_LISTENER, primaryListener(), this.properties.getReusePortListeners() > 1,
+				decoder, readerExecutor, connectionExecutor, interceptors, admissionController, hostNameResolver);
+	}
+
+	@Bean
+	public ReusePortListeners tcpSourceReusePortListeners(
+			@Qualifier("tcpSourceDecoder") AbstractByteArraySerializer decoder,
+			@Qualifier("tcpSourceReaderExecutor") NioReaderExecutor readerExecutor,
+			@Qualifier("tcpSourceConnectionExecutor") ConnectionExecutor connectionExecutor,
+			@Qualifier("tcpSourceInterceptors") TcpConnectionInterceptorFactoryChain interceptors,
+			@Qualifier("tcpSourceAdmissionController") AdmissionController admissionController,
+			@Qualifier("tcpSourceHostNameResolver") HostNameResolver hostNameResolver) {
+		Map<String, TcpConnectionFactoryFactoryBean> connectionFactories = new LinkedHashMap<>();
+		for (int i = 1; i < this.properties.getReusePortListeners(); i++) {
+			connectionFactories.put("listener-" + i, connectionFactory(PRIMARY_LISTENER, primaryListener(), true,
+					decoder, readerExecutor, connectionExecutor, interceptors, admissionController, hostNameResolver));
+		}
+		return new ReusePortListeners(connectionFactories, inputChannel());
+	}
+
+	@Bean
+	public ReusePortListeners tcpSourceListeners(
+			@Qualifier("tcpSourceReaderExecutor") NioReaderExecutor readerExecutor,
+			@Qualifier("tcpSourceConnectionExecutor") ConnectionExecutor connectionExecutor,
+			@Qualifier("tcpSourceRateLimiter") RateLimitInterceptorFactory rateLimiter,
+			@Qualifier("tcpSourceMemoryBudget") MemoryBudgetInterceptorFactory memoryBudget,
+			@Qualifier("tcpSourceAdmissionController") AdmissionController admissionController,
+			@Qualifier("tcpSourceHostNameResolver") HostNameResolver hostNameResolver,
+			ApplicationEventPublisher applicationEventPublisher) throws Exception {
+		Map<String, TcpConnectionFactoryFactoryBean> connectionFactories = new LinkedHashMap<>();
+		for (TcpSourceProperties.Listener listener : this.properties.getListeners()) {
+			String id = listener.getId() != null ? listener.getId() : Integer.toString(listener.getPort());
+			Assert.state(!PRIMARY_LISTENER.equals(id) && !connectionFactories.containsKey(id),
+					() -> "Duplicate listener id '" + id + "'");
+			EncoderDecoderFactoryBean decoder = new EncoderDecoderFactoryBean(listener.getDecoder());
+			decoder.setMaxMessageSize(listener.getBufferSize());
+			decoder.setPoolSize(this.properties.getDecodeBufferPoolSize());
+			decoder.setPoolWaitTimeout(this.properties.getDecodeBufferPoolWaitTimeout());
+			decoder.setFallback(this.properties.getDecoderFallback());
+			decoder.setApplicationEventPublisher(applicationEventPublisher);
+			decoder.afterPropertiesSet();
+			connectionFactories.put(id, connectionFactory(id, listener, false, decoder.getObject(),
+					readerExecutor, connectionExecutor,
+					interceptors(rateLimiter, memoryBudget.withDecodeBufferSize(listener.getBufferSize())),
+					admissionController, hostNameResolver));
+		}
+		return new ReusePortListeners(connectionFactories, inputChannel());
+	}
+
+	@Bean
+	public UdpReceiver tcpSourceUdpReceiver(@Qualifier(DISPATCH_CHANNEL) MessageChannel dispatchChannel,
+			@Qualifier(SHEDDING_CHANNEL) MessageChannel sheddingChannel, ObjectProvider<MeterRegistry> meterRegistry) {
+		TcpSourceProperties.Udp udp = this.properties.getUdp();
+		UdpReceiver receiver = new UdpReceiver(udp.getReceivers(), this.properties.getLocalAddress(),
+				udp.getPort() != null ? udp.getPort() : this.tcpConnectionProperties.getPort(), udp.getBufferSize(),
+				this.properties.getShedding().isEnabled() ? sheddingChannel : dispatchChannel);
+		if (receiver.isEnabled()) {
+			meterRegistry.ifAvailable(receiver::setMeterRegistry);
+		}
+		return receiver;
+	}
+
+	@Bean
+	public NioReaderExecutor tcpSourceReaderExecutor() {
+		return new NioReaderExecutor(this.properties.getNioReaderThreads());
+	}
+
+	@Bean
+	public ConnectionExecutor tcpSourceConnectionExecutor(ObjectProvider<MeterRegistry> meterRegistry) {
+		ConnectionExecutor connectionExecutor = new ConnectionExecutor(this.tcpConnectionProperties);
+		meterRegistry.ifAvailable(connectionExecutor::setMeterRegistry);
+		return connectionExecutor;
+	}
+
+	@Bean
+	public RingBufferExecutor tcpSourceRing(ObjectProvider<MeterRegistry> meterRegistry) {
+		TcpSourceProperties.Ring properties = this.properties.getRing();
+		RingBufferExecutor ring = new RingBufferExecutor(properties.getSize(), properties.getPublishers(),
+				properties.getBatchSize());
+		if (ring.isEnabled()) {
+			meterRegistry.ifAvailable(ring::setMeterRegistry);
+		}
+		return ring;
+	}
+
+	@Bean
+	public PartitionedExecutor tcpSourceLanes(ObjectProvider<MeterRegistry> meterRegistry, BeanFactory beanFactory) {
+		TcpSourceProperties.Partitioning properties = this.properties.getPartitioning();
+		PartitionedExecutor lanes = new PartitionedExecutor(properties.getLanes(), properties.getQueueCapacity(),
+				properties.getKeyExpression(), ExpressionUtils.createStandardEvaluationContext(beanFactory));
+		if (lanes.isEnabled()) {
+			List<String> messageHeaders = this.properties.getMessageHeaders();
+			String key = properties.getKeyExpression().getExpressionString();
+			for (String header : HostNameTcpMessageMapper.STANDARD_HEADERS) {
+				Assert.state(messageHeaders == null || messageHeaders.contains(header) || !key.contains(header),
+						() -> "'tcp.partitioning.key-expression' uses the " + header
+								+ " header, which 'tcp.message-headers' excludes");
+			}
+			meterRegistry.ifAvailable(lanes::setMeterRegistry);
+		}
+		return lanes;
+	}
+
+	@Bean
+	public HostNameResolver tcpSourceHostNameResolver() {
+		return new HostNameResolver(this.tcpConnectionProperties.isReverseLookup()
+				? this.tcpConnectionProperties.getReverseLookupCacheTtl()
+				: 0, this.tcpConnectionProperties.getReverseLookupNegativeCacheTtl());
+	}
+
+	@Bean
+	public AdmissionController tcpSourceAdmissionController(ObjectProvider<MeterRegistry> meterRegistry) {
+		AdmissionController admissionController = new AdmissionController(this.properties.getMaxConnections(),
+				this.properties.getMaxConnectionsPerAddress(), this.properties.getMaxAcceptRate());
+		if (admissionController.isEnabled()) {
+			meterRegistry.ifAvailable(admissionController::setMeterRegistry);
+		}
+		return admissionController;
+	}
+
+	@Bean
+	public MemoryBudgetInterceptorFactory tcpSourceMemoryBudget(ObjectProvider<MeterRegistry> meterRegistry) {
+		MemoryBudgetInterceptorFactory memoryBudget = new MemoryBudgetInterceptorFactory(
+				this.tcpConnectionProperties.getMemoryBudget(), this.tcpConnectionProperties.getMemoryPolicy(),
+				this.properties.getBufferSize());
+		if (this.tcpConnectionProperties.getMemoryBudget() > 0) {
+			meterRegistry.ifAvailable(memoryBudget::setMeterRegistry);
+		}
+		return memoryBudget;
+	}
+
+	@Bean
+	public RateLimitInterceptorFactory tcpSourceRateLimiter() {
+		return new RateLimitInterceptorFactory(this.properties.getConnectionRateLimit(),
+				this.properties.getAddressRateLimit());
+	}
+
+	@Bean
+	public TcpConnectionInterceptorFactoryChain tcpSourceInterceptors(
+			@Qualifier("tcpSourceRateLimiter") RateLimitInterceptorFactory rateLimiter,
+			@Qualifier("tcpSourceMemoryBudget") MemoryBudgetInterceptorFactory memoryBudget) {
+		return interceptors(rateLimiter, memoryBudget);
 	}
 
 	@Bean
 	public EncoderDecoderFactoryBean tcpSourceDecoder() {
 		EncoderDecoderFactoryBean factoryBean = new EncoderDecoderFactoryBean(this.properties.getDecoder());
 		factoryBean.setMaxMessageSize(this.properties.getBufferSize());
+		factoryBean.setPoolSize(this.properties.getDecodeBufferPoolSize());
+		factoryBean.setPoolWaitTimeout(this.properties.getDecodeBufferPoolWaitTimeout());
+		factoryBean.setFallback(this.properties.getDecoderFallback());
+		return factoryBean;
+	}
+
+	/**
+	 * @return the channel the adapters send to: the shedding filter when shedding is
+	 * enabled, otherwise the dispatch channel.
+	 */
+	private String inputChannel() {
+		return this.properties.getShedding().isEnabled() ? SHEDDING_CHANNEL : DISPATCH_CHANNEL;
+	}
+
+	private TcpConnectionInterceptorFactoryChain interceptors(RateLimitInterceptorFactory rateLimiter,
+			TcpConnectionInterceptorFactory memoryBudget) {
+		List<TcpConnectionInterceptorFactory> interceptors = new ArrayList<>();
+		if (rateLimiter.isEnabled()) {
+			interceptors.add(rateLimiter);
+		}
+		if (this.tcpConnectionProperties.getMemoryBudget() > 0) {
+			interceptors.add(memoryBudget);
+		}
+		TcpConnectionInterceptorFactoryChain chain = new TcpConnectionInterceptorFactoryChain();
+		chain.setInterceptors(interceptors.toArray(new TcpConnectionInterceptorFactory[0]));
+		return chain;
+	}
+
+	private TcpSourceProperties.Listener primaryListener() {
+		TcpSourceProperties.Listener listener = new TcpSourceProperties.Listener();
+		listener.setPort(this.tcpConnectionProperties.getPort());
+		listener.setDecoder(this.properties.getDecoder());
+		listener.setBufferSize(this.properties.getBufferSize());
+		listener.setNio(this.tcpConnectionProperties.isNio());
+		return listener;
+	}
+
+	private TcpConnectionFactoryFactoryBean connectionFactory(String id, TcpSourceProperties.Listener listener,
+			boolean reusePort, AbstractByteArraySerializer decoder, NioReaderExecutor readerExecutor,
+			ConnectionExecutor connectionExecutor, TcpConnectionInterceptorFactoryChain interceptors,
+			AdmissionController admissionController, HostNameResolver hostNameResolver) {
+		boolean nio = listener.getNio() != null ? listener.getNio() : this.tcpConnectionProperties.isNio();
+		TcpConnectionFactoryFactoryBean factoryBean = new TcpConnectionFactoryFactoryBean();
+		factoryBean.setType("server");
+		factoryBean.setPort(listener.getPort());
+		if (this.properties.getLocalAddress() != null) {
+			factoryBean.setLocalAddress(this.properties.getLocalAddress());
+		}
+		factoryBean.setUsingNio(nio);
+		factoryBean.setUsingDirectBuffers(this.tcpConnectionProperties.isUseDirectBuffers());
+		factoryBean.setLookupHost(this.tcpConnectionProperties.isReverseLookup() && !hostNameResolver.isEnabled());
+		boolean tagListener = !this.properties.getListeners().isEmpty();
+		if (tagListener || hostNameResolver.isEnabled() || this.properties.getMessageHeaders() != null) {
+			LeanTcpMessageMapper mapper = tagListener
+					? new ListenerTcpMessageMapper(id)
+					: new LeanTcpMessageMapper();
+			if (hostNameResolver.isEnabled()) {
+				mapper.setHostNameResolver(hostNameResolver);
+			}
+			mapper.setHeaderNames(this.properties.getMessageHeaders());
+			factoryBean.setMapper(mapper);
+		}
+		factoryBean.setDeserializer(decoder);
+		factoryBean.setSoTimeout(this.tcpConnectionProperties.getSocketTimeout());
+		factoryBean.setSoTcpNoDelay(this.tcpConnectionProperties.isNoDelay());
+		factoryBean.setInterceptorFactoryChain(interceptors);
+		if (connectionExecutor.getExecutor() != null) {
+			factoryBean.setTaskExecutor(connectionExecutor.getExecutor());
+		}
+		else if (nio) {
+			factoryBean.setTaskExecutor(readerExecutor.getExecutor());
+		}
+		if (reusePort) {
+			Assert.state(listener.getPort() > 0,
+					"'tcp.port' must be specified when using more than one listener");
+			factoryBean.setSocketSupport(new ReusePortSocketSupport());
+		}
+		AdmissionController admission = admissionController.isEnabled() ? admissionController : null;
+		if (nio) {
+			if (admission != null) {
+				factoryBean.setNioConnectionSupport(new AdmissionNioConnectionSupport(admission));
+			}
+		}
+		else if (reusePort || admission != null) {
+			factoryBean.setSocketFactorySupport(new ListenerSocketFactorySupport(reusePort, admission));
+		}
 		return factoryBean;
 	}
 
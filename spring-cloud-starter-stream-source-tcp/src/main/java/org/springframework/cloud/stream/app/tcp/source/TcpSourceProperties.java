@@ -16,10 +16,19 @@
 
 package org.springframework.cloud.stream.app.tcp.source;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.cloud.stream.app.tcp.Encoding;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.integration.ip.IpHeaders;
 import org.springframework.validation.annotation.Validated;
 
 /**
@@ -38,11 +47,113 @@ public class TcpSourceProperties {
 	 */
 	private Encoding decoder = Encoding.CRLF;
 
+	/**
+	 * The decoder used, when the decoder is AUTO, for connections whose framing is not detected.
+	 */
+	private Encoding decoderFallback = Encoding.CRLF;
+
 	/**
 	 * The buffer size used when decoding messages; larger messages will be rejected.
 	 */
 	private int bufferSize = 2048;
 
+	/**
+	 * The number of decode buffers (of buffer-size bytes) reused across messages; each open connection holds one
+	 * while it waits for data, so it must exceed the number of open connections. 0 to allocate a buffer for each
+	 * message.
+	 */
+	private int decodeBufferPoolSize = 0;
+
+	/**
+	 * The time (ms) a connection waits for a pooled decode buffer before it is closed.
+	 */
+	private long decodeBufferPoolWaitTimeout = 5000;
+
+	/**
+	 * The IP headers added to each message, e.g. ip_address,ip_connectionId; by default, all of ip_hostName,
+	 * ip_address, ip_tcp_remotePort, ip_connectionId and ip_localInetAddress.
+	 */
+	private List<String> messageHeaders;
+
+	/**
+	 * The number of threads reading from NIO connections; defaults to the number of processors.
+	 */
+	private int nioReaderThreads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * The number of sockets listening on the port, with SO_REUSEPORT when more than one (requires Java 9+).
+	 */
+	private int reusePortListeners = 1;
+
+	/**
+	 * The address of the interface on which to listen, e.g. 127.0.0.1 to accept connections only from the same host;
+	 * by default, all interfaces.
+	 */
+	private String localAddress;
+
+	/**
+	 * The number of messages queued for the dispatch pool at which reading from connections is paused; 0 to never pause.
+	 */
+	private int highWaterMark = 0;
+
+	/**
+	 * The number of queued messages at which paused reads are resumed.
+	 */
+	private int lowWaterMark = 0;
+
+	/**
+	 * The maximum number of open connections; further connections are closed as soon as they are accepted. 0 for no limit.
+	 */
+	private int maxConnections = 0;
+
+	/**
+	 * The maximum number of open connections from one remote IP address; 0 for no limit.
+	 */
+	private int maxConnectionsPerAddress = 0;
+
+	/**
+	 * The maximum number of connections accepted per second; 0 for no limit.
+	 */
+	private double maxAcceptRate = 0;
+
+	/**
+	 * The rate at which each connection may deliver messages; readers of faster connections are delayed.
+	 */
+	private final RateLimit connectionRateLimit = new RateLimit();
+
+	/**
+	 * The rate at which all the connections from one remote IP address together may deliver messages.
+	 */
+	private final RateLimit addressRateLimit = new RateLimit();
+
+	/**
+	 * Dropping of low-priority messages when the source falls behind.
+	 */
+	private final Shedding shedding = new Shedding();
+
+	/**
+	 * A ring buffer handing received messages to the binder; used instead of the dispatch pool when its size is set.
+	 */
+	private final Ring ring = new Ring();
+
+	/**
+	 * Lanes handing received messages to the binder in parallel while keeping the order of messages with the same
+	 * key; used instead of the dispatch pool when the number of lanes is set.
+	 */
+	private final Partitioning partitioning = new Partitioning();
+
+	/**
+	 * A UDP listener sending each datagram received to the same output as the TCP listener; used when the number of
+	 * receivers is set.
+	 */
+	private final Udp udp = new Udp();
+
+	/**
+	 * Additional listeners, each with its own port and decoder, sending to the same output; when set, each message
+	 * carries a tcp_listener header with the id of the listener that received it ('default' for tcp.port).
+	 */
+	private List<Listener> listeners = new ArrayList<>();
+
 	@NotNull
 	public Encoding getDecoder() {
 		return this.decoder;
@@ -52,6 +163,15 @@ public class TcpSourceProperties {
 		this.decoder = decoder;
 	}
 
+	@NotNull
+	public Encoding getDecoderFallback() {
+		return this.decoderFallback;
+	}
+
+	public void setDecoderFallback(Encoding decoderFallback) {
+		this.decoderFallback = decoderFallback;
+	}
+
 	public int getBufferSize() {
 		return bufferSize;
 	}
@@ -60,4 +180,445 @@ public class TcpSourceProperties {
 		this.bufferSize = bufferSize;
 	}
 
+	@PositiveOrZero
+	public int getDecodeBufferPoolSize() {
+		return this.decodeBufferPoolSize;
+	}
+
+	public void setDecodeBufferPoolSize(int decodeBufferPoolSize) {
+		this.decodeBufferPoolSize = decodeBufferPoolSize;
+	}
+
+	@Positive
+	public long getDecodeBufferPoolWaitTimeout() {
+		return this.decodeBufferPoolWaitTimeout;
+	}
+
+	public void setDecodeBufferPoolWaitTimeout(long decodeBufferPoolWaitTimeout) {
+		this.decodeBufferPoolWaitTimeout = decodeBufferPoolWaitTimeout;
+	}
+
+	public List<String> getMessageHeaders() {
+		return this.messageHeaders;
+	}
+
+	public void setMessageHeaders(List<String> messageHeaders) {
+		this.messageHeaders = messageHeaders;
+	}
+
+	@Positive
+	public int getNioReaderThreads() {
+		return this.nioReaderThreads;
+	}
+
+	public void setNioReaderThreads(int nioReaderThreads) {
+		this.nioReaderThreads = nioReaderThreads;
+	}
+
+	@Positive
+	public int getReusePortListeners() {
+		return this.reusePortListeners;
+	}
+
+	public void setReusePortListeners(int reusePortListeners) {
+		this.reusePortListeners = reusePortListeners;
+	}
+
+	public String getLocalAddress() {
+		return this.localAddress;
+	}
+
+	public void setLocalAddress(String localAddress) {
+		this.localAddress = localAddress;
+	}
+
+	public int getHighWaterMark() {
+		return this.highWaterMark;
+	}
+
+	public void setHighWaterMark(int highWaterMark) {
+		this.highWaterMark = highWaterMark;
+	}
+
+	public int getLowWaterMark() {
+		return this.lowWaterMark;
+	}
+
+	public void setLowWaterMark(int lowWaterMark) {
+		this.lowWaterMark = lowWaterMark;
+	}
+
+	@PositiveOrZero
+	public int getMaxConnections() {
+		return this.maxConnections;
+	}
+
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	@PositiveOrZero
+	public int getMaxConnectionsPerAddress() {
+		return this.maxConnectionsPerAddress;
+	}
+
+	public void setMaxConnectionsPerAddress(int maxConnectionsPerAddress) {
+		this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+	}
+
+	@PositiveOrZero
+	public double getMaxAcceptRate() {
+		return this.maxAcceptRate;
+	}
+
+	public void setMaxAcceptRate(double maxAcceptRate) {
+		this.maxAcceptRate = maxAcceptRate;
+	}
+
+	public RateLimit getConnectionRateLimit() {
+		return this.connectionRateLimit;
+	}
+
+	public RateLimit getAddressRateLimit() {
+		return this.addressRateLimit;
+	}
+
+	public Shedding getShedding() {
+		return this.shedding;
+	}
+
+	public Ring getRing() {
+		return this.ring;
+	}
+
+	public Partitioning getPartitioning() {
+		return this.partitioning;
+	}
+
+	public Udp getUdp() {
+		return this.udp;
+	}
+
+	@Valid
+	public List<Listener> getListeners() {
+		return this.listeners;
+	}
+
+	public void setListeners(List<Listener> listeners) {
+		this.listeners = listeners;
+	}
+
+	public static class RateLimit {
+
+		/**
+		 * The maximum number of messages per second; 0 for no limit.
+		 */
+		private double messagesPerSecond = 0;
+
+		/**
+		 * The maximum number of payload bytes per second; 0 for no limit.
+		 */
+		private double bytesPerSecond = 0;
+
+		public double getMessagesPerSecond() {
+			return this.messagesPerSecond;
+		}
+
+		public void setMessagesPerSecond(double messagesPerSecond) {
+			this.messagesPerSecond = messagesPerSecond;
+		}
+
+		public double getBytesPerSecond() {
+			return this.bytesPerSecond;
+		}
+
+		public void setBytesPerSecond(double bytesPerSecond) {
+			this.bytesPerSecond = bytesPerSecond;
+		}
+
+		boolean isEnabled() {
+			return this.messagesPerSecond > 0 || this.bytesPerSecond > 0;
+		}
+
+	}
+
+	public static class Shedding {
+
+		/**
+		 * An expression evaluated against each message to determine its priority, e.g. 'payload[0]'; required to
+		 * enable shedding.
+		 */
+		private Expression priorityExpression;
+
+		/**
+		 * The priority below which messages are shed while the source is overloaded.
+		 */
+		private int minPriority = 1;
+
+		/**
+		 * The number of messages sent to the dispatch pool but not yet sent to the binder at which the source is
+		 * overloaded; 0 to ignore.
+		 */
+		private int queueDepth = 0;
+
+		/**
+		 * The time (ms) between receiving a message and sending it to the binder beyond which the source is
+		 * overloaded; 0 to ignore.
+		 */
+		private long lag = 0;
+
+		/**
+		 * The fraction (0 to 1) of low-priority messages kept while the source is overloaded.
+		 */
+		private double sampleRate = 0;
+
+		public Expression getPriorityExpression() {
+			return this.priorityExpression;
+		}
+
+		public void setPriorityExpression(Expression priorityExpression) {
+			this.priorityExpression = priorityExpression;
+		}
+
+		public int getMinPriority() {
+			return this.minPriority;
+		}
+
+		public void setMinPriority(int minPriority) {
+			this.minPriority = minPriority;
+		}
+
+		public int getQueueDepth() {
+			return this.queueDepth;
+		}
+
+		public void setQueueDepth(int queueDepth) {
+			this.queueDepth = queueDepth;
+		}
+
+		public long getLag() {
+			return this.lag;
+		}
+
+		public void setLag(long lag) {
+			this.lag = lag;
+		}
+
+		public double getSampleRate() {
+			return this.sampleRate;
+		}
+
+		public void setSampleRate(double sampleRate) {
+			this.sampleRate = sampleRate;
+		}
+
+		boolean isEnabled() {
+			return this.queueDepth > 0 || this.lag > 0;
+		}
+
+	}
+
+	public static class Ring {
+
+		/**
+		 * The number of slots in the ring (a power of 2); 0 to not use a ring.
+		 */
+		private int size = 0;
+
+		/**
+		 * The number of threads taking messages from the ring and sending them to the binder.
+		 */
+		private int publishers = 1;
+
+		/**
+		 * The maximum number of messages a publisher sends before checking whether it should back off.
+		 */
+		private int batchSize = 64;
+
+		public int getSize() {
+			return this.size;
+		}
+
+		public void setSize(int size) {
+			this.size = size;
+		}
+
+		public int getPublishers() {
+			return this.publishers;
+		}
+
+		public void setPublishers(int publishers) {
+			this.publishers = publishers;
+		}
+
+		public int getBatchSize() {
+			return this.batchSize;
+		}
+
+		public void setBatchSize(int batchSize) {
+			this.batchSize = batchSize;
+		}
+
+	}
+
+	public static class Partitioning {
+
+		/**
+		 * The number of lanes, each with a single thread; 0 to not use lanes.
+		 */
+		private int lanes = 0;
+
+		/**
+		 * An expression evaluated against each message to determine its lane; messages with the same key are
+		 * sent in order.
+		 */
+		private Expression keyExpression = new SpelExpressionParser()
+				.parseExpression("headers['" + IpHeaders.CONNECTION_ID + "']");
+
+		/**
+		 * The number of messages queued for each lane; readers wait when their lane is full.
+		 */
+		private int queueCapacity = 1000;
+
+		public int getLanes() {
+			return this.lanes;
+		}
+
+		public void setLanes(int lanes) {
+			this.lanes = lanes;
+		}
+
+		public Expression getKeyExpression() {
+			return this.keyExpression;
+		}
+
+		public void setKeyExpression(Expression keyExpression) {
+			this.keyExpression = keyExpression;
+		}
+
+		public int getQueueCapacity() {
+			return this.queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+	}
+
+	public static class Udp {
+
+		/**
+		 * The number of threads receiving datagrams, each with its own socket bound with SO_REUSEPORT when more than
+		 * one (requires Java 9+); 0 to not listen for datagrams.
+		 */
+		private int receivers = 0;
+
+		/**
+		 * The port on which to receive datagrams; by default, the TCP port.
+		 */
+		private Integer port;
+
+		/**
+		 * The maximum size of a datagram; longer datagrams are dropped.
+		 */
+		private int bufferSize = 65507;
+
+		public int getReceivers() {
+			return this.receivers;
+		}
+
+		public void setReceivers(int receivers) {
+			this.receivers = receivers;
+		}
+
+		public Integer getPort() {
+			return this.port;
+		}
+
+		public void setPort(Integer port) {
+			this.port = port;
+		}
+
+		public int getBufferSize() {
+			return this.bufferSize;
+		}
+
+		public void setBufferSize(int bufferSize) {
+			this.bufferSize = bufferSize;
+		}
+
+	}
+
+	public static class Listener {
+
+		/**
+		 * The listener's id, set in the tcp_listener header; by default, its port.
+		 */
+		private String id;
+
+		/**
+		 * The port on which to listen; required.
+		 */
+		private int port;
+
+		/**
+		 * The decoder to use when receiving messages.
+		 */
+		private Encoding decoder = Encoding.CRLF;
+
+		/**
+		 * The buffer size used when decoding messages; larger messages will be rejected.
+		 */
+		private int bufferSize = 2048;
+
+		/**
+		 * Whether or not to use NIO; by default, as tcp.nio.
+		 */
+		private Boolean nio;
+
+		public String getId() {
+			return this.id;
+		}
+
+		public void setId(String id) {
+			this.id = id;
+		}
+
+		@Positive
+		public int getPort() {
+			return this.port;
+		}
+
+		public void setPort(int port) {
+			this.port = port;
+		}
+
+		@NotNull
+		public Encoding getDecoder() {
+			return this.decoder;
+		}
+
+		public void setDecoder(Encoding decoder) {
+			this.decoder = decoder;
+		}
+
+		public int getBufferSize() {
+			return this.bufferSize;
+		}
+
+		public void setBufferSize(int bufferSize) {
+			this.bufferSize = bufferSize;
+		}
+
+		public Boolean getNio() {
+			return this.nio;
+		}
+
+		public void setNio(Boolean nio) {
+			this.nio = nio;
+		}
+
+	}
+
 }
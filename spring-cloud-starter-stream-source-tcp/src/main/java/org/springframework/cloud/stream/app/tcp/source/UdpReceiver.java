@@ -0,0 +1,260 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp.source;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.integration.ip.IpHeaders;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Receives UDP datagrams and sends each one, as a {@code byte[]} with the sender's
+ * {@link IpHeaders#IP_ADDRESS} and {@link IpHeaders#PORT}, to the same channel as the TCP
+ * adapters. Each receiver thread has its own non-blocking {@link DatagramChannel}; when
+ * there is more than one, they are bound to the same port with {@code SO_REUSEPORT} so the
+ * kernel distributes datagrams between them. When its selector wakes up, a receiver drains
+ * every datagram queued on its channel, receiving each one into the same buffer and copying
+ * it out at its exact length. The buffer has one spare byte, so that a datagram that fills it
+ * is known to have been truncated; such datagrams are dropped and counted rather than sent.
+ * A failure to receive one datagram is logged and the receiver carries on.
+ * <p>0 receivers creates a disabled receiver with no channels or threads.
+ */
+class UdpReceiver implements SmartLifecycle {
+
+	private static final Log logger = LogFactory.getLog(UdpReceiver.class);
+
+	private final int receivers;
+
+	private final String localAddress;
+
+	private final int port;
+
+	private final int bufferSize;
+
+	private final MessageChannel outputChannel;
+
+	private final ThreadFactory threadFactory = new CustomizableThreadFactory("tcp-udp-receiver-");
+
+	private final List<Selector> selectors = new ArrayList<>();
+
+	private volatile boolean running;
+
+	private volatile int boundPort;
+
+	private Counter truncatedCounter;
+
+	/**
+	 * @param receivers the number of receiver threads, or 0 to disable.
+	 * @param localAddress the address to bind to, or null for all interfaces.
+	 * @param port the port; 0 for the OS to choose one.
+	 * @param bufferSize the maximum datagram size; longer datagrams are dropped.
+	 * @param outputChannel the channel to send messages to.
+	 */
+	UdpReceiver(int receivers, String localAddress, int port, int bufferSize, MessageChannel outputChannel) {
+		Assert.isTrue(receivers >= 0, "'receivers' cannot be negative");
+		Assert.isTrue(bufferSize > 0, "'bufferSize' must be positive");
+		this.receivers = receivers;
+		this.localAddress = localAddress;
+		this.port = port;
+		this.bufferSize = bufferSize;
+		this.outputChannel = outputChannel;
+	}
+
+	/**
+	 * Count the datagrams dropped because they were longer than the buffer size as the
+	 * {@code tcp.udp.truncated} counter.
+	 * @param meterRegistry the registry.
+	 */
+	void setMeterRegistry(MeterRegistry meterRegistry) {
+		this.truncatedCounter = Counter.builder("tcp.udp.truncated")
+				.description("Datagrams dropped because they were longer than the buffer size")
+				.register(meterRegistry);
+	}
+
+	boolean isEnabled() {
+		return this.receivers > 0;
+	}
+
+	/**
+	 * @return the port the receivers are bound to, or 0 if they are not running.
+	 */
+	int getPort() {
+		return this.boundPort;
+	}
+
+	@Override
+	public synchronized void start() {
+		if (!isEnabled() || this.running) {
+			return;
+		}
+		List<DatagramChannel> channels = new ArrayList<>();
+		try {
+			int bindPort = this.port;
+			for (int i = 0; i < this.receivers; i++) {
+				DatagramChannel channel = DatagramChannel.open();
+				channels.add(channel);
+				if (this.receivers > 1) {
+					ReusePortSocketSupport.enable(channel);
+				}
+				channel.bind(this.localAddress == null
+						? new InetSocketAddress(bindPort)
+						: new InetSocketAddress(this.localAddress, bindPort));
+				channel.configureBlocking(false);
+				bindPort = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+				Selector selector = Selector.open();
+				channel.register(selector, SelectionKey.OP_READ);
+				this.selectors.add(selector);
+			}
+			this.boundPort = bindPort;
+		}
+		catch (IOException e) {
+			for (DatagramChannel channel : channels) {
+				close(channel);
+			}
+			for (Selector selector : this.selectors) {
+				close(selector);
+			}
+			this.selectors.clear();
+			throw new UncheckedIOException("Failed to bind UDP port " + this.port, e);
+		}
+		this.running = true;
+		for (int i = 0; i < channels.size(); i++) {
+			DatagramChannel channel = channels.get(i);
+			Selector selector = this.selectors.get(i);
+			this.threadFactory.newThread(() -> receive(channel, selector)).start();
+		}
+	}
+
+	private void receive(DatagramChannel channel, Selector selector) {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(this.bufferSize + 1);
+		try {
+			while (this.running) {
+				try {
+					selector.select();
+					selector.selectedKeys().clear();
+					SocketAddress sender;
+					while (this.running && (sender = channel.receive(buffer)) != null) {
+						buffer.flip();
+						if (buffer.remaining() > this.bufferSize) {
+							truncated(sender);
+						}
+						else {
+							byte[] payload = new byte[buffer.remaining()];
+							buffer.get(payload);
+							send(payload, (InetSocketAddress) sender);
+						}
+						buffer.clear();
+					}
+				}
+				catch (ClosedChannelException e) {
+					// stopped
+					return;
+				}
+				catch (IOException e) {
+					buffer.clear();
+					logger.error("Failed to receive a datagram", e);
+				}
+			}
+		}
+		finally {
+			close(channel);
+			close(selector);
+		}
+	}
+
+	private void truncated(SocketAddress sender) {
+		if (this.truncatedCounter != null) {
+			this.truncatedCounter.increment();
+		}
+		logger.warn("Dropped a datagram from " + sender + " longer than the buffer size (" + this.bufferSize
+				+ " bytes)");
+	}
+
+	private void send(byte[] payload, InetSocketAddress sender) {
+		try {
+			this.outputChannel.send(MessageBuilder.withPayload(payload)
+					.setHeader(IpHeaders.IP_ADDRESS, sender.getAddress().getHostAddress())
+					.setHeader(IpHeaders.PORT, sender.getPort())
+					.build());
+		}
+		catch (RuntimeException e) {
+			logger.error("Failed to send a datagram from " + sender, e);
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		this.running = false;
+		for (Selector selector : this.selectors) {
+			selector.wakeup();
+		}
+		this.selectors.clear();
+		this.boundPort = 0;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return true;
+	}
+
+	@Override
+	public void stop(Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	@Override
+	public int getPhase() {
+		return Integer.MAX_VALUE / 2;
+	}
+
+	private static void close(Closeable closeable) {
+		try {
+			closeable.close();
+		}
+		catch (IOException e) {
+			// ignore
+		}
+	}
+
+}
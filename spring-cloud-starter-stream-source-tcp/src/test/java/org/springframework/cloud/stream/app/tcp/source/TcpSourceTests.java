@@ -17,32 +17,104 @@
 package org.springframework.cloud.stream.app.tcp.source;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.springframework.cloud.stream.test.matcher.MessageQueueMatcher.receivesPayloadThat;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
+import javax.net.ServerSocketFactory;
 import javax.net.SocketFactory;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.hamcrest.Matchers;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.bind.validation.BindValidationException;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cloud.stream.app.tcp.AutoDetectingDeserializer;
+import org.springframework.cloud.stream.app.tcp.ConnectionExecutor;
+import org.springframework.cloud.stream.app.tcp.EncoderDecoderFactoryBean;
+import org.springframework.cloud.stream.app.tcp.Encoding;
+import org.springframework.cloud.stream.app.tcp.HostNameResolver;
+import org.springframework.cloud.stream.app.tcp.HostNameTcpMessageMapper;
+import org.springframework.cloud.stream.app.tcp.MemoryBudgetInterceptorFactory;
+import org.springframework.cloud.stream.app.tcp.TcpConnectionFactoryProperties;
+import org.springframework.cloud.stream.app.tcp.TcpConnectionFactoryProperties.RejectionPolicy;
 import org.springframework.cloud.stream.messaging.Source;
 import org.springframework.cloud.stream.test.binder.MessageCollector;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.integration.channel.ExecutorChannel;
+import org.springframework.integration.ip.IpHeaders;
 import org.springframework.integration.ip.tcp.connection.AbstractServerConnectionFactory;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionCloseEvent;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorFactory;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorFactoryChain;
+import org.springframework.integration.ip.tcp.connection.TcpListener;
 import org.springframework.integration.ip.tcp.connection.TcpNetServerConnectionFactory;
 import org.springframework.integration.ip.tcp.connection.TcpNioServerConnectionFactory;
+import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayCrLfSerializer;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayRawSerializer;
 import org.springframework.integration.test.util.TestUtils;
+import org.springframework.integration.util.CompositeExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.messaging.support.InterceptableChannel;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.ReflectionUtils;
 
 /**
  * Tests for TcpSource.
@@ -78,18 +150,226 @@ public abstract class TcpSourceTests {
 			assertTrue(TestUtils.getPropertyValue(this.connectionFactory, "usingDirectBuffers", Boolean.class));
 			assertEquals(123, TestUtils.getPropertyValue(this.connectionFactory, "soTimeout"));
 			assertEquals(5, TestUtils.getPropertyValue(this.connectionFactory, "deserializer.maxMessageSize"));
+			assertThat(TestUtils.getPropertyValue(this.connectionFactory, "taskExecutor"),
+					Matchers.instanceOf(CompositeExecutor.class));
 		}
 
 	}
 
 	public static class NotNioTests extends TcpSourceTests {
 
+		@Autowired
+		private NioReaderExecutor readerExecutor;
+
 		@Test
 		public void test() throws Exception {
 			assertThat(this.connectionFactory, Matchers.instanceOf(TcpNetServerConnectionFactory.class));
 			assertFalse(TestUtils.getPropertyValue(this.connectionFactory, "lookupHost", Boolean.class));
 			assertEquals(120000, TestUtils.getPropertyValue(this.connectionFactory, "soTimeout"));
 			assertEquals(2048, TestUtils.getPropertyValue(this.connectionFactory, "deserializer.maxMessageSize"));
+			assertNull(TestUtils.getPropertyValue(this.readerExecutor, "readers"));
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.nio = true", "tcp.nioReaderThreads = 2" })
+	public static class NioReaderThreadsTests extends TcpSourceTests {
+
+		@Autowired
+		private NioReaderExecutor readerExecutor;
+
+		@Test
+		public void test() throws Exception {
+			int port = getPort();
+			List<Socket> sockets = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				Socket socket = SocketFactory.getDefault().createSocket("localhost", port);
+				socket.getOutputStream().write(("foo" + i + "\r\n").getBytes());
+				sockets.add(socket);
+			}
+			Set<String> received = new HashSet<>();
+			for (int i = 0; i < 4; i++) {
+				Message<?> message = this.messageCollector.forChannel(channels.output()).poll(10, TimeUnit.SECONDS);
+				assertNotNull(message);
+				received.add(new String((byte[]) message.getPayload()));
+			}
+			assertEquals(new HashSet<>(Arrays.asList("foo0", "foo1", "foo2", "foo3")), received);
+			ThreadPoolExecutor readers =
+					TestUtils.getPropertyValue(this.readerExecutor, "readers", ThreadPoolExecutor.class);
+			assertThat(readers.getLargestPoolSize(),
+					Matchers.both(Matchers.greaterThan(0)).and(Matchers.lessThanOrEqualTo(2)));
+			for (Socket socket : sockets) {
+				socket.close();
+			}
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.reverseLookup = true", "tcp.reverseLookupCacheTtl = 60000" })
+	public static class CachedReverseLookupTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			assertFalse(TestUtils.getPropertyValue(this.connectionFactory, "lookupHost", Boolean.class));
+			assertThat(TestUtils.getPropertyValue(this.connectionFactory, "mapper"),
+					Matchers.instanceOf(HostNameTcpMessageMapper.class));
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", getPort());
+			String hostName = null;
+			String expected = null;
+			int n = 0;
+			while (n++ < 50 && (expected == null || !expected.equals(hostName))) {
+				socket.getOutputStream().write("foo\r\n".getBytes());
+				Message<?> message = this.messageCollector.forChannel(channels.output()).poll(10, TimeUnit.SECONDS);
+				assertNotNull(message);
+				hostName = message.getHeaders().get(IpHeaders.HOSTNAME, String.class);
+				assertNotNull("ip_hostName was not set", hostName);
+				expected = InetAddress.getByName(message.getHeaders().get(IpHeaders.IP_ADDRESS, String.class))
+						.getHostName();
+				Thread.sleep(100);
+			}
+			assertEquals("the cached host name is used once resolved", expected, hostName);
+			socket.close();
+		}
+
+	}
+
+	public static class HostNameResolverTests {
+
+		private final Map<String, String> hostNames = new ConcurrentHashMap<>();
+
+		private final AtomicInteger lookups = new AtomicInteger();
+
+		private HostNameResolver resolver;
+
+		@After
+		public void tearDown() {
+			if (this.resolver != null) {
+				this.resolver.destroy();
+			}
+		}
+
+		@Test
+		public void positiveTtl() throws Exception {
+			this.hostNames.put("10.0.0.1", "one");
+			resolver(60000, 60000);
+			assertNull("not looked up yet", this.resolver.resolve("10.0.0.1"));
+			assertEquals("one", awaitResolved("10.0.0.1", "one"));
+			this.resolver.resolve("10.0.0.1");
+			assertEquals("cached", 1, this.lookups.get());
+		}
+
+		@Test
+		public void negativeTtl() throws Exception {
+			resolver(60000, 300);
+			assertNull(this.resolver.resolve("10.0.0.2"));
+			awaitLookups(1);
+			Thread.sleep(50);
+			assertNull(this.resolver.resolve("10.0.0.2"));
+			assertEquals("failure cached", 1, this.lookups.get());
+			Thread.sleep(400);
+			assertNull(this.resolver.resolve("10.0.0.2"));
+			awaitLookups(2);
+		}
+
+		@Test
+		public void refreshWhileStale() throws Exception {
+			this.hostNames.put("10.0.0.3", "one");
+			resolver(200, 200);
+			this.resolver.resolve("10.0.0.3");
+			assertEquals("one", awaitResolved("10.0.0.3", "one"));
+			this.hostNames.put("10.0.0.3", "two");
+			Thread.sleep(300);
+			assertEquals("stale name returned while refreshing", "one", this.resolver.resolve("10.0.0.3"));
+			assertEquals("two", awaitResolved("10.0.0.3", "two"));
+		}
+
+		@Test
+		public void eviction() throws Exception {
+			resolver(60000, 1);
+			for (int i = 0; i < 10000; i++) {
+				this.resolver.resolve("10.1." + (i >> 8) + "." + (i & 255));
+			}
+			awaitLookups(10000);
+			Thread.sleep(100);
+			assertEquals(10000, this.resolver.getSize());
+			this.resolver.resolve("10.2.0.0");
+			int n = 0;
+			while (n++ < 100 && this.resolver.getSize() > 1) {
+				Thread.sleep(100);
+			}
+			assertEquals("expired entries evicted", 1, this.resolver.getSize());
+		}
+
+		private void resolver(long ttl, long negativeTtl) {
+			this.resolver = new HostNameResolver(ttl, negativeTtl) {
+
+				@Override
+				protected String reverseLookup(String address) {
+					HostNameResolverTests.this.lookups.incrementAndGet();
+					return HostNameResolverTests.this.hostNames.get(address);
+				}
+
+			};
+		}
+
+		private String awaitResolved(String address, String expected) throws InterruptedException {
+			String hostName = this.resolver.resolve(address);
+			int n = 0;
+			while (n++ < 100 && !expected.equals(hostName)) {
+				Thread.sleep(100);
+				hostName = this.resolver.resolve(address);
+			}
+			return hostName;
+		}
+
+		private void awaitLookups(int count) throws InterruptedException {
+			int n = 0;
+			while (n++ < 100 && this.lookups.get() < count) {
+				Thread.sleep(100);
+			}
+			assertEquals(count, this.lookups.get());
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.decodeBufferPoolSize = 4" })
+	public static class DecodeBufferPoolTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			assertNotNull(TestUtils.getPropertyValue(this.connectionFactory, "deserializer.pool"));
+			doTest("", "foo", "\r\n");
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.decodeBufferPoolSize = 1", "tcp.decodeBufferPoolWaitTimeout = 500" })
+	public static class DecodeBufferPoolExhaustedTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			Socket holder = SocketFactory.getDefault().createSocket("localhost", getPort());
+			holder.getOutputStream().write("foo\r\n".getBytes());
+			assertThat(this.messageCollector.forChannel(channels.output()), receivesPayloadThat(is("foo".getBytes())));
+			Socket starved = SocketFactory.getDefault().createSocket("localhost", getPort());
+			starved.setSoTimeout(10000);
+			assertEquals(-1, starved.getInputStream().read());
+			starved.close();
+			holder.getOutputStream().write("bar\r\n".getBytes());
+			assertThat(this.messageCollector.forChannel(channels.output()), receivesPayloadThat(is("bar".getBytes())));
+			holder.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.localAddress = 127.0.0.1", "tcp.noDelay = true" })
+	public static class LocalAddressTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			assertEquals("127.0.0.1", TestUtils.getPropertyValue(this.connectionFactory, "localAddress"));
+			assertTrue(TestUtils.getPropertyValue(this.connectionFactory, "soTcpNoDelay", Boolean.class));
+			doTest("", "foo", "\r\n");
 		}
 
 	}
@@ -173,6 +453,933 @@ public abstract class TcpSourceTests {
 
 	}
 
+	@TestPropertySource(properties = { "tcp.decoder = AUTO" })
+	public static class AUTOTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			doTest("\u0002", "foo", "\u0003");
+			doTest("\u0000\u0000\u0000\u0003", "foo", "");
+			doTest("\u0000\u0003", "foo", "");
+			doTest("", "foo", "\n");
+			doTest("", "foo", "\r\n");
+		}
+
+	}
+
+	public static class AutoDetectingDeserializerTests {
+
+		@Test
+		public void fallback() throws Exception {
+			AutoDetectingDeserializer deserializer = new AutoDetectingDeserializer(new ByteArrayRawSerializer());
+			deserializer.setMaxMessageSize(8);
+			assertArrayEquals("foo".getBytes(), deserializer.deserialize(new ByteArrayInputStream("foo".getBytes())));
+		}
+
+		@Test
+		public void largeL2Frame() throws Exception {
+			AutoDetectingDeserializer deserializer = new AutoDetectingDeserializer(new ByteArrayCrLfSerializer());
+			deserializer.setMaxMessageSize(8192);
+			byte[] payload = new byte[0x1000];
+			Arrays.fill(payload, (byte) 'a');
+			ByteArrayOutputStream frames = new ByteArrayOutputStream();
+			frames.write(new byte[] { 0x10, 0x00 });
+			frames.write(payload);
+			frames.write(new byte[] { 0x00, 0x03 });
+			frames.write("bar".getBytes());
+			InputStream inputStream = new ByteArrayInputStream(frames.toByteArray());
+			assertArrayEquals(payload, deserializer.deserialize(inputStream));
+			assertArrayEquals("bar".getBytes(), deserializer.deserialize(inputStream));
+		}
+
+		@Test
+		public void forgottenWhenDecodingFails() throws Exception {
+			AutoDetectingDeserializer deserializer = new AutoDetectingDeserializer(new ByteArrayCrLfSerializer());
+			InputStream inputStream = new ByteArrayInputStream("foo\r\n".getBytes());
+			assertArrayEquals("foo".getBytes(), deserializer.deserialize(inputStream));
+			assertEquals(1, TestUtils.getPropertyValue(deserializer, "detected", Map.class).size());
+			try {
+				deserializer.deserialize(inputStream);
+				fail("Expected end of stream");
+			}
+			catch (IOException e) {
+				assertEquals(0, TestUtils.getPropertyValue(deserializer, "detected", Map.class).size());
+			}
+		}
+
+		@Test
+		public void pooled() throws Exception {
+			EncoderDecoderFactoryBean factoryBean = new EncoderDecoderFactoryBean(Encoding.AUTO);
+			factoryBean.setPoolSize(2);
+			factoryBean.afterPropertiesSet();
+			AbstractByteArraySerializer deserializer = factoryBean.getObject();
+			assertNotNull(TestUtils.getPropertyValue(deserializer, "crLf.pool"));
+			assertNotNull(TestUtils.getPropertyValue(deserializer, "lf.pool"));
+			assertNotNull(TestUtils.getPropertyValue(deserializer, "stxEtx.pool"));
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.port = ${tcp.source.test.reuse.port}", "tcp.reusePortListeners = 2" })
+	public static class ReusePortListenersTests extends TcpSourceTests {
+
+		@Autowired
+		@Qualifier("tcpSourceReusePortListeners")
+		private ReusePortListeners listeners;
+
+		@BeforeClass
+		public static void choosePort() throws Exception {
+			Assume.assumeFalse("SO_REUSEPORT requires Java 9 or later",
+					System.getProperty("java.version").startsWith("1."));
+			ServerSocket serverSocket = ServerSocketFactory.getDefault().createServerSocket(0);
+			System.setProperty("tcp.source.test.reuse.port", Integer.toString(serverSocket.getLocalPort()));
+			serverSocket.close();
+		}
+
+		@Test
+		public void test() throws Exception {
+			int port = getPort();
+			int n = 0;
+			while (n++ < 100 && !this.listeners.isListening()) {
+				Thread.sleep(100);
+			}
+			assertTrue("listener failed to start listening", this.listeners.isListening());
+			List<Socket> sockets = new ArrayList<>();
+			Set<String> sent = new HashSet<>();
+			for (int i = 0; i < 20; i++) {
+				Socket socket = SocketFactory.getDefault().createSocket("localhost", port);
+				socket.getOutputStream().write(("foo" + i + "\r\n").getBytes());
+				sockets.add(socket);
+				sent.add("foo" + i);
+			}
+			Set<String> received = new HashSet<>();
+			for (int i = 0; i < 20; i++) {
+				Message<?> message = this.messageCollector.forChannel(channels.output()).poll(10, TimeUnit.SECONDS);
+				assertNotNull(message);
+				received.add(new String((byte[]) message.getPayload()));
+			}
+			assertEquals(sent, received);
+			// the kernel spread the connections across both listeners
+			assertThat(this.connectionFactory.getOpenConnectionIds().size(),
+					Matchers.both(Matchers.greaterThan(0)).and(Matchers.lessThan(20)));
+			for (Socket socket : sockets) {
+				socket.close();
+			}
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.taskExecutor = testReaderExecutor" })
+	public static class TaskExecutorTests extends TcpSourceTests {
+
+		@Autowired
+		@Qualifier("testReaderExecutor")
+		private Executor readerExecutor;
+
+		@Test
+		public void test() throws Exception {
+			assertSame(this.readerExecutor, TestUtils.getPropertyValue(this.connectionFactory, "taskExecutor"));
+			doTest("", "foo", "\r\n");
+		}
+
+		@TestConfiguration
+		public static class ExecutorConfiguration {
+
+			@Bean(destroyMethod = "shutdown")
+			public ExecutorService testReaderExecutor() {
+				return Executors.newCachedThreadPool();
+			}
+
+		}
+
+	}
+
+	public static class VirtualThreadsTests {
+
+		@Test
+		public void test() {
+			Assume.assumeTrue("virtual threads are available",
+					ReflectionUtils.findMethod(Executors.class, "newVirtualThreadPerTaskExecutor") == null);
+			TcpConnectionFactoryProperties properties = new TcpConnectionFactoryProperties();
+			properties.setVirtualThreads(true);
+			try {
+				new ConnectionExecutor(properties).afterPropertiesSet();
+				fail("Expected IllegalStateException");
+			}
+			catch (IllegalStateException e) {
+				assertThat(e.getMessage(), Matchers.containsString("'tcp.virtual-threads' requires Java 21 or later"));
+			}
+		}
+
+	}
+
+	public static class DiscardingIoPoolTests {
+
+		@Test
+		public void test() {
+			TcpConnectionFactoryProperties properties = new TcpConnectionFactoryProperties();
+			properties.getIoPool().setMaxSize(1);
+			properties.getIoPool().setRejectionPolicy(RejectionPolicy.DISCARD_OLDEST);
+			try {
+				new ConnectionExecutor(properties).afterPropertiesSet();
+				fail("Expected IllegalArgumentException");
+			}
+			catch (IllegalArgumentException e) {
+				assertThat(e.getMessage(), Matchers.containsString("'tcp.io-pool.rejection-policy'"));
+			}
+		}
+
+	}
+
+	public static class DiscardedTasksTests {
+
+		@Test
+		public void test() throws Exception {
+			TcpConnectionFactoryProperties properties = new TcpConnectionFactoryProperties();
+			properties.getDispatchPool().setMaxSize(1);
+			properties.getDispatchPool().setRejectionPolicy(RejectionPolicy.DISCARD);
+			ConnectionExecutor connectionExecutor = new ConnectionExecutor(properties);
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			connectionExecutor.setMeterRegistry(meterRegistry);
+			connectionExecutor.afterPropertiesSet();
+			CountDownLatch busy = new CountDownLatch(1);
+			try {
+				connectionExecutor.getDispatchExecutor().execute(() -> {
+					try {
+						busy.await(10, TimeUnit.SECONDS);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+				connectionExecutor.getDispatchExecutor().execute(() -> { });
+				connectionExecutor.getDispatchExecutor().execute(() -> { });
+				assertEquals(2, connectionExecutor.getDiscardedTasks());
+				assertEquals(2.0, meterRegistry.get("tcp.pool.discarded").tag("pool", "tcp.dispatch").counter().count(),
+						0.0);
+			}
+			finally {
+				busy.countDown();
+				connectionExecutor.destroy();
+			}
+		}
+
+	}
+
+	public static class FlowControlTests {
+
+		@Test
+		public void test() throws Exception {
+			ExecutorService dispatcher = Executors.newSingleThreadExecutor();
+			ExecutorChannel channel = new ExecutorChannel(dispatcher);
+			channel.addInterceptor(new FlowControlInterceptor(3, 1));
+			Semaphore handled = new Semaphore(0);
+			channel.subscribe(message -> handled.acquireUninterruptibly());
+			AtomicInteger sent = new AtomicInteger();
+			Thread reader = new Thread(() -> {
+				for (int i = 0; i < 5; i++) {
+					channel.send(new GenericMessage<>("foo" + i));
+					sent.incrementAndGet();
+				}
+			});
+			reader.start();
+			try {
+				int n = 0;
+				while (n++ < 100 && sent.get() < 3) {
+					Thread.sleep(100);
+				}
+				Thread.sleep(200);
+				assertEquals("paused at the high-water mark", 3, sent.get());
+				handled.release();
+				Thread.sleep(200);
+				assertEquals("still above the low-water mark", 3, sent.get());
+				handled.release();
+				reader.join(10000);
+				assertEquals("resumed at the low-water mark", 5, sent.get());
+			}
+			finally {
+				handled.release(5);
+				dispatcher.shutdownNow();
+			}
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.memoryBudget = 1000", "tcp.dispatchPool.maxSize = 2" })
+	public static class MemoryBudgetBelowBuffersTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			Socket socket1 = SocketFactory.getDefault().createSocket("localhost", getPort());
+			Socket socket2 = SocketFactory.getDefault().createSocket("localhost", getPort());
+			socket1.getOutputStream().write("foo\r\nfoo\r\n".getBytes());
+			socket2.getOutputStream().write("bar\r\nbar\r\n".getBytes());
+			List<String> payloads = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				Message<?> message = this.messageCollector.forChannel(channels.output()).poll(10, TimeUnit.SECONDS);
+				assertNotNull("reading stopped with idle buffers over the budget", message);
+				payloads.add(new String((byte[]) message.getPayload()));
+			}
+			assertThat(payloads, Matchers.containsInAnyOrder("foo", "foo", "bar", "bar"));
+			socket1.close();
+			socket2.close();
+		}
+
+	}
+
+	public static class MemoryBudgetTests {
+
+		private final List<Socket> sockets = new ArrayList<>();
+
+		private final Semaphore handled = new Semaphore(0);
+
+		private final AtomicInteger received = new AtomicInteger();
+
+		private TcpNetServerConnectionFactory server;
+
+		@After
+		public void tearDown() throws Exception {
+			this.handled.release(100);
+			for (Socket socket : this.sockets) {
+				socket.close();
+			}
+			if (this.server != null) {
+				this.server.stop();
+			}
+		}
+
+		@Test
+		public void pause() throws Exception {
+			start(new MemoryBudgetInterceptorFactory(100, TcpConnectionFactoryProperties.MemoryPolicy.PAUSE, 0),
+					this::hold);
+			send(80);
+			awaitReceived(1);
+			send(80);
+			awaitReceived(2);
+			send(80);
+			Thread.sleep(500);
+			assertEquals("paused over the budget", 2, this.received.get());
+			this.handled.release();
+			awaitReceived(3);
+		}
+
+		@Test
+		public void pauseWithBuffersOverBudget() throws Exception {
+			start(new MemoryBudgetInterceptorFactory(100, TcpConnectionFactoryProperties.MemoryPolicy.PAUSE, 2048),
+					message -> {
+						this.received.incrementAndGet();
+						return false;
+					});
+			send(80);
+			send(80);
+			awaitReceived(2);
+		}
+
+		@Test
+		public void shed() throws Exception {
+			start(new MemoryBudgetInterceptorFactory(100, TcpConnectionFactoryProperties.MemoryPolicy.SHED, 0),
+					this::hold);
+			Socket small = send(10);
+			awaitReceived(1);
+			Socket large = send(150);
+			assertClosed(large);
+			small.setSoTimeout(500);
+			try {
+				small.getInputStream().read();
+				fail("Expected the smaller connection to stay open");
+			}
+			catch (SocketTimeoutException e) {
+				// still open
+			}
+		}
+
+		@Test
+		public void reject() throws Exception {
+			start(new MemoryBudgetInterceptorFactory(100, TcpConnectionFactoryProperties.MemoryPolicy.REJECT, 200),
+					message -> {
+						this.received.incrementAndGet();
+						return false;
+					});
+			send(10);
+			awaitReceived(1);
+			Socket rejected = SocketFactory.getDefault().createSocket("localhost", this.server.getPort());
+			this.sockets.add(rejected);
+			assertClosed(rejected);
+		}
+
+		@Test
+		public void releasedWhenHandled() throws Exception {
+			MemoryBudgetInterceptorFactory memoryBudget =
+					new MemoryBudgetInterceptorFactory(0, TcpConnectionFactoryProperties.MemoryPolicy.PAUSE, 0);
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			memoryBudget.setMeterRegistry(meterRegistry);
+			ExecutorService dispatcher = Executors.newSingleThreadExecutor();
+			try {
+				ExecutorChannel channel = new ExecutorChannel(dispatcher);
+				channel.addInterceptor(memoryBudget.getDispatchInterceptor());
+				channel.subscribe(this::hold);
+				start(memoryBudget, channel::send);
+				send(80);
+				awaitReceived(1);
+				assertEquals("charged while queued and handled", 80.0,
+						meterRegistry.get("tcp.memory.used").gauge().value(), 0.0);
+				this.handled.release();
+				int n = 0;
+				while (n++ < 100 && meterRegistry.get("tcp.memory.used").gauge().value() > 0) {
+					Thread.sleep(100);
+				}
+				assertEquals(0.0, meterRegistry.get("tcp.memory.used").gauge().value(), 0.0);
+			}
+			finally {
+				dispatcher.shutdownNow();
+			}
+		}
+
+		private boolean hold(Message<?> message) {
+			this.received.incrementAndGet();
+			this.handled.acquireUninterruptibly();
+			return false;
+		}
+
+		private void start(MemoryBudgetInterceptorFactory memoryBudget, TcpListener listener) throws Exception {
+			this.server = new TcpNetServerConnectionFactory(0);
+			TcpConnectionInterceptorFactoryChain chain = new TcpConnectionInterceptorFactoryChain();
+			chain.setInterceptors(new TcpConnectionInterceptorFactory[] { memoryBudget });
+			this.server.setInterceptorFactoryChain(chain);
+			this.server.setApplicationEventPublisher(event -> {
+				if (event instanceof TcpConnectionCloseEvent) {
+					memoryBudget.onApplicationEvent((TcpConnectionCloseEvent) event);
+				}
+			});
+			this.server.registerListener(listener);
+			this.server.start();
+			int n = 0;
+			while (n++ < 100 && !this.server.isListening()) {
+				Thread.sleep(100);
+			}
+			assertTrue("server failed to start listening", this.server.isListening());
+		}
+
+		private Socket send(int size) throws Exception {
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", this.server.getPort());
+			this.sockets.add(socket);
+			byte[] frame = new byte[size + 2];
+			Arrays.fill(frame, (byte) 'x');
+			frame[size] = '\r';
+			frame[size + 1] = '\n';
+			socket.getOutputStream().write(frame);
+			return socket;
+		}
+
+		private void awaitReceived(int count) throws InterruptedException {
+			int n = 0;
+			while (n++ < 100 && this.received.get() < count) {
+				Thread.sleep(100);
+			}
+			assertEquals(count, this.received.get());
+		}
+
+		private void assertClosed(Socket socket) throws Exception {
+			socket.setSoTimeout(10000);
+			try {
+				assertEquals(-1, socket.getInputStream().read());
+			}
+			catch (SocketException e) {
+				// reset
+			}
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.shedding.queueDepth = 1", "tcp.shedding.priorityExpression = 1" })
+	public static class SheddingTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			doTest("", "foo", "\r\n");
+		}
+
+	}
+
+	public static class SheddingInterceptorTests {
+
+		private final ExecutorChannel channel = new ExecutorChannel(Runnable::run);
+
+		private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+		private final Message<String> high = new GenericMessage<>("high");
+
+		private final Message<String> low = new GenericMessage<>("low");
+
+		@Test
+		public void queueDepth() {
+			TcpSourceProperties.Shedding shedding = shedding();
+			shedding.setQueueDepth(2);
+			SheddingInterceptor shedder = shedder(shedding);
+			assertTrue("not overloaded", shedder.accept(this.low));
+			shedder.preSend(this.low, this.channel);
+			shedder.preSend(this.low, this.channel);
+			assertFalse(shedder.accept(this.low));
+			assertTrue(shedder.accept(this.high));
+			shedder.afterMessageHandled(this.low, this.channel, null, null);
+			assertTrue("drained below the queue depth", shedder.accept(this.low));
+			assertCounts(1, 0, 1);
+		}
+
+		@Test
+		public void lag() throws Exception {
+			TcpSourceProperties.Shedding shedding = shedding();
+			shedding.setLag(100);
+			SheddingInterceptor shedder = shedder(shedding);
+			Message<String> late = new GenericMessage<>("low");
+			shedder.preSend(late, this.channel);
+			Thread.sleep(200);
+			shedder.afterMessageHandled(late, this.channel, null, null);
+			assertTrue("lagging but nothing in flight", shedder.accept(this.low));
+			shedder.preSend(this.low, this.channel);
+			assertFalse(shedder.accept(this.low));
+			assertTrue(shedder.accept(this.high));
+			shedder.afterMessageHandled(this.low, this.channel, null, null);
+			assertTrue("drained", shedder.accept(this.low));
+			assertCounts(1, 0, 1);
+		}
+
+		@Test
+		public void sampling() {
+			TcpSourceProperties.Shedding shedding = shedding();
+			shedding.setQueueDepth(1);
+			shedding.setSampleRate(0.5);
+			SheddingInterceptor shedder = shedder(shedding);
+			shedder.preSend(this.low, this.channel);
+			int accepted = 0;
+			for (int i = 0; i < 1000; i++) {
+				if (shedder.accept(this.low)) {
+					accepted++;
+				}
+			}
+			assertThat(accepted, Matchers.allOf(Matchers.greaterThan(300), Matchers.lessThan(700)));
+			assertCounts(0, accepted, 1000 - accepted);
+		}
+
+		private TcpSourceProperties.Shedding shedding() {
+			TcpSourceProperties.Shedding shedding = new TcpSourceProperties.Shedding();
+			shedding.setPriorityExpression(new SpelExpressionParser().parseExpression("payload == 'high' ? 1 : 0"));
+			return shedding;
+		}
+
+		private SheddingInterceptor shedder(TcpSourceProperties.Shedding shedding) {
+			SheddingInterceptor shedder = new SheddingInterceptor(shedding, new StandardEvaluationContext());
+			shedder.setMeterRegistry(this.meterRegistry);
+			return shedder;
+		}
+
+		private void assertCounts(int kept, int sampled, int dropped) {
+			assertEquals(kept, count("kept"), 0.0);
+			assertEquals(sampled, count("sampled"), 0.0);
+			assertEquals(dropped, count("dropped"), 0.0);
+		}
+
+		private double count(String outcome) {
+			return this.meterRegistry.get("tcp.shedding").tag("outcome", outcome).counter().count();
+		}
+
+	}
+
+	public static class RingBufferExecutorTests {
+
+		@Test
+		public void fullRing() throws Exception {
+			RingBufferExecutor ring = new RingBufferExecutor(2, 1, 1);
+			CountDownLatch started = new CountDownLatch(1);
+			CountDownLatch blocked = new CountDownLatch(1);
+			try {
+				ring.getExecutor().execute(() -> {
+					started.countDown();
+					try {
+						blocked.await(10, TimeUnit.SECONDS);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+				assertTrue(started.await(10, TimeUnit.SECONDS));
+				ring.getExecutor().execute(() -> { });
+				ring.getExecutor().execute(() -> { });
+				assertEquals(2, ring.getDepth());
+				CountDownLatch added = new CountDownLatch(1);
+				Thread reader = new Thread(() -> {
+					ring.getExecutor().execute(() -> { });
+					added.countDown();
+				});
+				reader.start();
+				assertFalse("the reader waits while the ring is full", added.await(500, TimeUnit.MILLISECONDS));
+				blocked.countDown();
+				assertTrue(added.await(10, TimeUnit.SECONDS));
+				int n = 0;
+				while (n++ < 100 && ring.getDepth() > 0) {
+					Thread.sleep(100);
+				}
+				assertEquals(0, ring.getDepth());
+			}
+			finally {
+				blocked.countDown();
+				ring.destroy();
+			}
+		}
+
+		@Test
+		public void concurrentReaders() throws Exception {
+			RingBufferExecutor ring = new RingBufferExecutor(8, 4, 4);
+			int readers = 4;
+			int tasks = 10000;
+			AtomicIntegerArray runs = new AtomicIntegerArray(readers * tasks);
+			CountDownLatch done = new CountDownLatch(readers * tasks);
+			ExecutorService exec = Executors.newFixedThreadPool(readers);
+			try {
+				for (int i = 0; i < readers; i++) {
+					int reader = i;
+					exec.execute(() -> {
+						for (int j = 0; j < tasks; j++) {
+							int task = reader * tasks + j;
+							ring.getExecutor().execute(() -> {
+								runs.incrementAndGet(task);
+								done.countDown();
+							});
+						}
+					});
+				}
+				assertTrue("not all tasks ran", done.await(30, TimeUnit.SECONDS));
+				for (int i = 0; i < runs.length(); i++) {
+					assertEquals("task " + i, 1, runs.get(i));
+				}
+			}
+			finally {
+				exec.shutdownNow();
+				ring.destroy();
+			}
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.maxConnections = 1" })
+	public static class MaxConnectionsTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			int port = getPort();
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", port);
+			socket.getOutputStream().write("foo\r\n".getBytes());
+			assertThat(this.messageCollector.forChannel(channels.output()), receivesPayloadThat(is("foo".getBytes())));
+			Socket refused = SocketFactory.getDefault().createSocket("localhost", port);
+			refused.setSoTimeout(10000);
+			try {
+				assertEquals(-1, refused.getInputStream().read());
+			}
+			catch (SocketException e) {
+				// reset
+			}
+			refused.close();
+			socket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.nio = true" })
+	public static class MaxConnectionsNioTests extends MaxConnectionsTests {
+
+	}
+
+	@TestPropertySource(properties = { "tcp.connectionRateLimit.messagesPerSecond = 2" })
+	public static class RateLimitTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", getPort());
+			long start = System.currentTimeMillis();
+			socket.getOutputStream().write("foo\r\nfoo\r\nfoo\r\nfoo\r\n".getBytes());
+			for (int i = 0; i < 4; i++) {
+				assertThat(this.messageCollector.forChannel(channels.output()),
+						receivesPayloadThat(is("foo".getBytes())));
+			}
+			assertThat(System.currentTimeMillis() - start, Matchers.greaterThanOrEqualTo(900L));
+			socket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.addressRateLimit.messagesPerSecond = 2" })
+	public static class AddressRateLimitTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			Socket socket1 = SocketFactory.getDefault().createSocket("localhost", getPort());
+			Socket socket2 = SocketFactory.getDefault().createSocket("localhost", getPort());
+			long start = System.currentTimeMillis();
+			socket1.getOutputStream().write("foo\r\nfoo\r\n".getBytes());
+			socket2.getOutputStream().write("foo\r\nfoo\r\n".getBytes());
+			for (int i = 0; i < 4; i++) {
+				assertThat(this.messageCollector.forChannel(channels.output()),
+						receivesPayloadThat(is("foo".getBytes())));
+			}
+			assertThat("both connections share the address limit", System.currentTimeMillis() - start,
+					Matchers.greaterThanOrEqualTo(900L));
+			socket1.close();
+			socket2.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.connectionRateLimit.bytesPerSecond = 10" })
+	public static class BytesRateLimitTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", getPort());
+			long start = System.currentTimeMillis();
+			socket.getOutputStream().write("foo\r\nfoo\r\nfoo\r\nfoo\r\nfoo\r\nfoo\r\n".getBytes());
+			for (int i = 0; i < 6; i++) {
+				assertThat(this.messageCollector.forChannel(channels.output()),
+						receivesPayloadThat(is("foo".getBytes())));
+			}
+			assertThat(System.currentTimeMillis() - start, Matchers.greaterThanOrEqualTo(700L));
+			socket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.ring.size = 8", "tcp.ring.publishers = 2" })
+	public static class RingTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			doTest("", "foo", "\r\n");
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.partitioning.lanes = 4" })
+	public static class PartitioningTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", getPort());
+			for (int i = 0; i < 10; i++) {
+				socket.getOutputStream().write(("foo" + i + "\r\n").getBytes());
+			}
+			for (int i = 0; i < 10; i++) {
+				assertThat(this.messageCollector.forChannel(channels.output()),
+						receivesPayloadThat(is(("foo" + i).getBytes())));
+			}
+			socket.close();
+		}
+
+		@Test
+		public void connectionsUseDifferentLanes() throws Exception {
+			Set<String> threads = ConcurrentHashMap.newKeySet();
+			((InterceptableChannel) channels.output()).addInterceptor(new ChannelInterceptor() {
+
+				@Override
+				public Message<?> preSend(Message<?> message, MessageChannel channel) {
+					threads.add(Thread.currentThread().getName());
+					return message;
+				}
+
+			});
+			List<Socket> sockets = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				Socket socket = SocketFactory.getDefault().createSocket("localhost", getPort());
+				socket.getOutputStream().write(("bar" + i + "\r\n").getBytes());
+				sockets.add(socket);
+			}
+			for (int i = 0; i < 8; i++) {
+				assertNotNull(this.messageCollector.forChannel(channels.output()).poll(10, TimeUnit.SECONDS));
+			}
+			for (String thread : threads) {
+				assertTrue(thread, thread.startsWith("tcp-lane-"));
+			}
+			assertTrue("all connections used one lane: " + threads, threads.size() > 1);
+			for (Socket socket : sockets) {
+				socket.close();
+			}
+		}
+
+	}
+
+	public static class PartitionedExecutorTests {
+
+		@Test
+		public void blockedLaneDoesNotStallOthers() throws Exception {
+			PartitionedExecutor lanes = new PartitionedExecutor(2, 10,
+					new SpelExpressionParser().parseExpression("headers['key']"), new StandardEvaluationContext());
+			ExecutorChannel channel = new ExecutorChannel(lanes.getExecutor());
+			channel.addInterceptor(lanes.getKeyInterceptor());
+			channel.setBeanFactory(TestUtils.createTestApplicationContext());
+			channel.afterPropertiesSet();
+			CountDownLatch release = new CountDownLatch(1);
+			CountDownLatch handled = new CountDownLatch(1);
+			Map<Integer, String> threads = new ConcurrentHashMap<>();
+			channel.subscribe(message -> {
+				Integer key = message.getHeaders().get("key", Integer.class);
+				threads.put(key, Thread.currentThread().getName());
+				if (key == 0) {
+					try {
+						release.await(10, TimeUnit.SECONDS);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				else {
+					handled.countDown();
+				}
+			});
+			try {
+				channel.send(MessageBuilder.withPayload("foo").setHeader("key", 0).build());
+				channel.send(MessageBuilder.withPayload("bar").setHeader("key", 1).build());
+				assertTrue("the second lane was stalled by the first", handled.await(10, TimeUnit.SECONDS));
+				assertThat(threads.get(0), Matchers.startsWith("tcp-lane-0-"));
+				assertThat(threads.get(1), Matchers.startsWith("tcp-lane-1-"));
+			}
+			finally {
+				release.countDown();
+				lanes.destroy();
+			}
+		}
+
+	}
+
+	public static class PartitioningKeyHeaderTests {
+
+		@Test
+		public void test() {
+			try {
+				new SpringApplicationBuilder(TcpSourceApplication.class)
+						.web(WebApplicationType.NONE)
+						.run("--tcp.port=0", "--tcp.partitioning.lanes=4", "--tcp.message-headers=ip_address")
+						.close();
+				fail("Expected the key's excluded header to be rejected");
+			}
+			catch (Exception e) {
+				Throwable cause = NestedExceptionUtils.getMostSpecificCause(e);
+				assertThat(cause, Matchers.instanceOf(IllegalStateException.class));
+				assertThat(cause.getMessage(), Matchers.containsString(IpHeaders.CONNECTION_ID));
+			}
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.udp.receivers = 1" })
+	public static class UdpTests extends TcpSourceTests {
+
+		@Autowired
+		private UdpReceiver udpReceiver;
+
+		@Test
+		public void test() throws Exception {
+			int n = 0;
+			while (n++ < 100 && this.udpReceiver.getPort() == 0) {
+				Thread.sleep(100);
+			}
+			DatagramSocket socket = new DatagramSocket();
+			InetSocketAddress address = new InetSocketAddress("localhost", this.udpReceiver.getPort());
+			socket.send(new DatagramPacket("foo".getBytes(), 3, address));
+			socket.send(new DatagramPacket("bar".getBytes(), 3, address));
+			Message<?> message = this.messageCollector.forChannel(channels.output()).poll(10, TimeUnit.SECONDS);
+			assertNotNull(message);
+			assertArrayEquals("foo".getBytes(), (byte[]) message.getPayload());
+			assertEquals(socket.getLocalPort(), message.getHeaders().get(IpHeaders.PORT));
+			assertThat(this.messageCollector.forChannel(channels.output()), receivesPayloadThat(is("bar".getBytes())));
+			socket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.udp.receivers = 1", "tcp.udp.bufferSize = 3" })
+	public static class UdpTruncationTests extends TcpSourceTests {
+
+		@Autowired
+		private UdpReceiver udpReceiver;
+
+		@Test
+		public void test() throws Exception {
+			SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+			this.udpReceiver.setMeterRegistry(meterRegistry);
+			int n = 0;
+			while (n++ < 100 && this.udpReceiver.getPort() == 0) {
+				Thread.sleep(100);
+			}
+			DatagramSocket socket = new DatagramSocket();
+			InetSocketAddress address = new InetSocketAddress("localhost", this.udpReceiver.getPort());
+			socket.send(new DatagramPacket("foobar".getBytes(), 6, address));
+			socket.send(new DatagramPacket("baz".getBytes(), 3, address));
+			assertThat(this.messageCollector.forChannel(channels.output()), receivesPayloadThat(is("baz".getBytes())));
+			assertEquals(1, meterRegistry.get("tcp.udp.truncated").counter().count(), 0);
+			socket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.listeners[0].id = lf",
+			"tcp.listeners[0].port = ${tcp.source.test.listener.port}", "tcp.listeners[0].decoder = LF" })
+	public static class ListenersTests extends TcpSourceTests {
+
+		@Autowired
+		@Qualifier("tcpSourceListeners")
+		private ReusePortListeners listeners;
+
+		@BeforeClass
+		public static void choosePort() throws Exception {
+			ServerSocket serverSocket = ServerSocketFactory.getDefault().createServerSocket(0);
+			System.setProperty("tcp.source.test.listener.port", Integer.toString(serverSocket.getLocalPort()));
+			serverSocket.close();
+		}
+
+		@Test
+		public void test() throws Exception {
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", getPort());
+			socket.getOutputStream().write("foo\r\n".getBytes());
+			Message<?> message = this.messageCollector.forChannel(channels.output()).poll(10, TimeUnit.SECONDS);
+			assertNotNull(message);
+			assertArrayEquals("foo".getBytes(), (byte[]) message.getPayload());
+			assertEquals("default", message.getHeaders().get(ListenerTcpMessageMapper.LISTENER));
+			socket.close();
+
+			AbstractServerConnectionFactory lf = this.listeners.getConnectionFactory("lf");
+			int n = 0;
+			while (n++ < 100 && !lf.isListening()) {
+				Thread.sleep(100);
+			}
+			assertTrue("listener failed to start listening", lf.isListening());
+			socket = SocketFactory.getDefault().createSocket("localhost", lf.getPort());
+			socket.getOutputStream().write("bar\n".getBytes());
+			message = this.messageCollector.forChannel(channels.output()).poll(10, TimeUnit.SECONDS);
+			assertNotNull(message);
+			assertArrayEquals("bar".getBytes(), (byte[]) message.getPayload());
+			assertEquals("lf", message.getHeaders().get(ListenerTcpMessageMapper.LISTENER));
+			socket.close();
+		}
+
+	}
+
+	public static class ListenerPortTests {
+
+		@Test
+		public void test() {
+			try {
+				new SpringApplicationBuilder(TcpSourceApplication.class)
+						.web(WebApplicationType.NONE)
+						.run("--tcp.port=0", "--tcp.listeners[0].id=lf", "--tcp.listeners[0].decoder=LF")
+						.close();
+				fail("Expected a listener without a port to be rejected");
+			}
+			catch (Exception e) {
+				assertThat(NestedExceptionUtils.getMostSpecificCause(e),
+						Matchers.instanceOf(BindValidationException.class));
+			}
+		}
+
+	}
+
 	/*
 	 * Sends two messages with <prefix><payload><suffix> and asserts the
 	 * payload is received on the other side.
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
+import org.springframework.integration.ip.tcp.serializer.AbstractPooledBufferByteArraySerializer;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayCrLfSerializer;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayLengthHeaderSerializer;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayLfSerializer;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayStxEtxSerializer;
+import org.springframework.util.Assert;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+/**
+ * A deserializer that determines the framing of each connection from its first bytes and
+ * then decodes all of the connection's messages with the matching deserializer:
+ * <ul>
+ * <li>STX (0x02): {@link Encoding#STXETX}</li>
+ * <li>two zero bytes: {@link Encoding#L4}</li>
+ * <li>any other control character: {@link Encoding#L2}</li>
+ * <li>text: {@link Encoding#CRLF} or {@link Encoding#LF}, according to how the first line
+ * ends</li>
+ * </ul>
+ * Text with no line feed within the maximum message size, or ending with the connection,
+ * is decoded by the fallback deserializer. The deserializer chosen for a connection is
+ * remembered against its input stream in a concurrent map, so subsequent messages only
+ * cost a lookup; it is forgotten when decoding fails, as it does when the connection
+ * closes, and otherwise once the stream is garbage collected.
+ * <p>The detection is a heuristic and its limits follow from the first byte of a length
+ * header: an L2 message whose length is 0x0200-0x02FF (the first byte is STX) is taken
+ * for STX/ETX; one whose length is 0x0900-0x09FF, 0x0A00-0x0AFF or 0x0D00-0x0DFF (a tab,
+ * LF or CR) or 0x2000 or more (a printable byte) is taken for text; an L4 message of
+ * 0x10000 bytes or more is taken for another framing; and an empty L2 message is taken
+ * for L4. None of these arise while the maximum message size is below 0x0200 bytes. L1,
+ * NULL-terminated and raw framings are never detected.
+ * <p>Only for decoding; it cannot be used to encode.
+ */
+public class AutoDetectingDeserializer extends AbstractByteArraySerializer {
+
+	private static final int STX = 0x02;
+
+	private final Map<InputStream, AbstractByteArraySerializer> detected =
+			new ConcurrentReferenceHashMap<>(16, ConcurrentReferenceHashMap.ReferenceType.WEAK);
+
+	private final AbstractByteArraySerializer stxEtx = new ByteArrayStxEtxSerializer();
+
+	private final AbstractByteArraySerializer l2 = new ByteArrayLengthHeaderSerializer(2);
+
+	private final AbstractByteArraySerializer l4 = new ByteArrayLengthHeaderSerializer(4);
+
+	private final AbstractByteArraySerializer crLf = new ByteArrayCrLfSerializer();
+
+	private final AbstractByteArraySerializer lf = new ByteArrayLfSerializer();
+
+	private final AbstractByteArraySerializer fallback;
+
+	/**
+	 * @param fallback the deserializer for connections whose framing is not detected.
+	 */
+	public AutoDetectingDeserializer(AbstractByteArraySerializer fallback) {
+		Assert.notNull(fallback, "'fallback' cannot be null");
+		this.fallback = fallback;
+	}
+
+	@Override
+	public void setMaxMessageSize(int maxMessageSize) {
+		super.setMaxMessageSize(maxMessageSize);
+		for (AbstractByteArraySerializer delegate : delegates()) {
+			delegate.setMaxMessageSize(maxMessageSize);
+		}
+	}
+
+	/**
+	 * Pool the decode buffers of the delegates that decode into a buffer of the maximum
+	 * message size; each such framing has its own pool of this size.
+	 * @param poolSize the pool size.
+	 * @see AbstractPooledBufferByteArraySerializer#setPoolSize(int)
+	 */
+	public void setPoolSize(int poolSize) {
+		for (AbstractByteArraySerializer delegate : delegates()) {
+			if (delegate instanceof AbstractPooledBufferByteArraySerializer) {
+				((AbstractPooledBufferByteArraySerializer) delegate).setPoolSize(poolSize);
+			}
+		}
+	}
+
+	/**
+	 * @param poolWaitTimeout the time (ms) to wait for a pooled decode buffer.
+	 * @see AbstractPooledBufferByteArraySerializer#setPoolWaitTimeout(long)
+	 */
+	public void setPoolWaitTimeout(long poolWaitTimeout) {
+		for (AbstractByteArraySerializer delegate : delegates()) {
+			if (delegate instanceof AbstractPooledBufferByteArraySerializer) {
+				((AbstractPooledBufferByteArraySerializer) delegate).setPoolWaitTimeout(poolWaitTimeout);
+			}
+		}
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
+		super.setApplicationEventPublisher(applicationEventPublisher);
+		for (AbstractByteArraySerializer delegate : delegates()) {
+			delegate.setApplicationEventPublisher(applicationEventPublisher);
+		}
+	}
+
+	@Override
+	public byte[] deserialize(InputStream inputStream) throws IOException {
+		AbstractByteArraySerializer delegate = this.detected.get(inputStream);
+		try {
+			return delegate != null ? delegate.deserialize(inputStream) : detect(inputStream);
+		}
+		catch (IOException | RuntimeException e) {
+			this.detected.remove(inputStream);
+			throw e;
+		}
+	}
+
+	@Override
+	public void serialize(byte[] bytes, OutputStream outputStream) {
+		throw new UnsupportedOperationException("Framing can only be detected when decoding");
+	}
+
+	private byte[] detect(InputStream inputStream) throws IOException {
+		int first = inputStream.read();
+		checkClosure(first);
+		if (first == STX) {
+			return decodeFirst(this.stxEtx, inputStream, new byte[] { STX });
+		}
+		if (first == 0) {
+			int second = inputStream.read();
+			if (second < 0) {
+				return decodeFirst(this.fallback, inputStream, new byte[] { 0 });
+			}
+			return decodeFirst(second == 0 ? this.l4 : this.l2, inputStream, new byte[] { 0, (byte) second });
+		}
+		if (first < ' ' && first != '\t' && first != '\r' && first != '\n') {
+			return decodeFirst(this.l2, inputStream, new byte[] { (byte) first });
+		}
+		byte[] buffer = new byte[Math.max(this.maxMessageSize, 2)];
+		int n = 0;
+		int bite = first;
+		buffer[n++] = (byte) bite;
+		while (bite != '\n' && n < buffer.length) {
+			bite = inputStream.read();
+			if (bite < 0) {
+				break;
+			}
+			buffer[n++] = (byte) bite;
+		}
+		if (bite != '\n') {
+			return decodeFirst(this.fallback, inputStream, Arrays.copyOf(buffer, n));
+		}
+		boolean crLf = n > 1 && buffer[n - 2] == '\r';
+		this.detected.put(inputStream, crLf ? this.crLf : this.lf);
+		return Arrays.copyOf(buffer, n - (crLf ? 2 : 1));
+	}
+
+	private byte[] decodeFirst(AbstractByteArraySerializer delegate, InputStream inputStream, byte[] consumed)
+			throws IOException {
+		this.detected.put(inputStream, delegate);
+		return delegate.deserialize(new SequenceInputStream(new ByteArrayInputStream(consumed), inputStream));
+	}
+
+	private AbstractByteArraySerializer[] delegates() {
+		return new AbstractByteArraySerializer[] { this.stxEtx, this.l2, this.l4, this.crLf, this.lf, this.fallback };
+	}
+
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp;
+
+import java.util.Date;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionCloseEvent;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * Keeps a client connection open, replacing the fixed retry interval of a client-mode
+ * adapter. Failed attempts, and connections that close before they have been open for
+ * the reset interval, are retried with an exponentially increasing, jittered delay, up to
+ * a maximum; a connection that closes after the reset interval is re-established
+ * immediately. A server that accepts connections and closes them at once therefore sees
+ * the same backoff as one that refuses them.
+ */
+public class BackoffConnectionManager implements SmartLifecycle, ApplicationListener<TcpConnectionCloseEvent> {
+
+	private static final Log logger = LogFactory.getLog(BackoffConnectionManager.class);
+
+	private final AbstractConnectionFactory connectionFactory;
+
+	private final TaskScheduler taskScheduler;
+
+	private long initialInterval = 100;
+
+	private long maxInterval = 60000;
+
+	private double multiplier = 2.0;
+
+	private double jitter = 0.5;
+
+	private long resetInterval = 10000;
+
+	private Timer reconnectTimer;
+
+	private Counter failureCounter;
+
+	private volatile int attempts;
+
+	private volatile long disconnectedAt;
+
+	private volatile long connectedAt;
+
+	private ScheduledFuture<?> future;
+
+	private volatile boolean running;
+
+	public BackoffConnectionManager(AbstractConnectionFactory connectionFactory, TaskScheduler taskScheduler) {
+		Assert.notNull(connectionFactory, "'connectionFactory' cannot be null");
+		Assert.notNull(taskScheduler, "'taskScheduler' cannot be null");
+		this.connectionFactory = connectionFactory;
+		this.taskScheduler = taskScheduler;
+	}
+
+	/**
+	 * The delay (ms) before the second attempt; the first is always immediate.
+	 * @param initialInterval the initial interval.
+	 */
+	public void setInitialInterval(long initialInterval) {
+		this.initialInterval = initialInterval;
+	}
+
+	/**
+	 * The maximum delay (ms) between attempts.
+	 * @param maxInterval the maximum interval.
+	 */
+	public void setMaxInterval(long maxInterval) {
+		this.maxInterval = maxInterval;
+	}
+
+	/**
+	 * The factor by which the delay grows after each failed attempt.
+	 * @param multiplier the multiplier.
+	 */
+	public void setMultiplier(double multiplier) {
+		Assert.isTrue(multiplier >= 1.0, "'multiplier' must be at least 1.0");
+		this.multiplier = multiplier;
+	}
+
+	/**
+	 * The fraction (0 to 1) of each delay that is randomized, so that clients
+	 * do not reconnect in lockstep.
+	 * @param jitter the jitter.
+	 */
+	public void setJitter(double jitter) {
+		Assert.isTrue(jitter >= 0.0 && jitter <= 1.0, "'jitter' must be between 0 and 1");
+		this.jitter = jitter;
+	}
+
+	/**
+	 * The time (ms) a connection must stay open before the delay is reset to the
+	 * initial interval.
+	 * @param resetInterval the reset interval.
+	 */
+	public void setResetInterval(long resetInterval) {
+		this.resetInterval = resetInterval;
+	}
+
+	/**
+	 * Publish the reconnect latency and the number of failed attempts, tagged with
+	 * the endpoint.
+	 * @param meterRegistry the registry.
+	 */
+	public void setMeterRegistry(MeterRegistry meterRegistry) {
+		String endpoint = this.connectionFactory.getHost() + ":" + this.connectionFactory.getPort();
+		this.reconnectTimer = Timer.builder("tcp.reconnect.latency")
+				.description("Time from losing a connection until it is re-established")
+				.tag("endpoint", endpoint)
+				.register(meterRegistry);
+		this.failureCounter = Counter.builder("tcp.reconnect.failures")
+				.description("Failed connection attempts")
+				.tag("endpoint", endpoint)
+				.register(meterRegistry);
+	}
+
+	@Override
+	public void start() {
+		this.running = true;
+		this.attempts = 0;
+		this.connectedAt = 0;
+		this.disconnectedAt = System.currentTimeMillis();
+		schedule(0);
+	}
+
+	@Override
+	public void stop() {
+		this.running = false;
+		synchronized (this) {
+			if (this.future != null) {
+				this.future.cancel(false);
+				this.future = null;
+			}
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return true;
+	}
+
+	@Override
+	public void stop(Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	@Override
+	public int getPhase() {
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public void onApplicationEvent(TcpConnectionCloseEvent event) {
+		if (this.running && ObjectUtils.nullSafeEquals(event.getConnectionFactoryName(),
+				this.connectionFactory.getComponentName())) {
+			long now = System.currentTimeMillis();
+			if (this.disconnectedAt == 0) {
+				this.disconnectedAt = now;
+			}
+			long connectedAt = this.connectedAt;
+			this.connectedAt = 0;
+			if (connectedAt > 0 && now - connectedAt >= this.resetInterval) {
+				this.attempts = 0;
+				schedule(0);
+			}
+			else {
+				schedule(nextDelay(this.attempts++));
+			}
+		}
+	}
+
+	/*
+	 * Schedule an attempt, replacing a pending one unless it is due sooner.
+	 */
+	private synchronized void schedule(long delay) {
+		if (this.future != null && !this.future.isDone()) {
+			if (this.future.getDelay(TimeUnit.MILLISECONDS) <= delay) {
+				return;
+			}
+			this.future.cancel(false);
+		}
+		this.future = this.taskScheduler.schedule(this::connect, new Date(System.currentTimeMillis() + delay));
+	}
+
+	private void connect() {
+		synchronized (this) {
+			this.future = null;
+		}
+		if (!this.running) {
+			return;
+		}
+		try {
+			this.connectionFactory.getConnection();
+			if (this.disconnectedAt > 0) {
+				long latency = System.currentTimeMillis() - this.disconnectedAt;
+				if (this.reconnectTimer != null) {
+					this.reconnectTimer.record(latency, TimeUnit.MILLISECONDS);
+				}
+				if (logger.isDebugEnabled()) {
+					logger.debug("Connected to " + this.connectionFactory.getHost() + ":"
+							+ this.connectionFactory.getPort() + " after " + latency + "ms");
+				}
+			}
+			this.connectedAt = System.currentTimeMillis();
+			this.disconnectedAt = 0;
+		}
+		catch (Exception e) {
+			if (this.failureCounter != null) {
+				this.failureCounter.increment();
+			}
+			long delay = nextDelay(this.attempts++);
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to connect to " + this.connectionFactory.getHost() + ":"
+						+ this.connectionFactory.getPort() + "; retrying in " + delay + "ms", e);
+			}
+			schedule(delay);
+		}
+	}
+
+	private long nextDelay(int failedAttempts) {
+		double delay = Math.min(this.maxInterval, this.initialInterval * Math.pow(this.multiplier, failedAttempts));
+		return (long) (delay * (1.0 - this.jitter * ThreadLocalRandom.current().nextDouble()));
+	}
+
+}
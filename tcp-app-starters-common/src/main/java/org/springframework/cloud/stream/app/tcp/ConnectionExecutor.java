@@ -0,0 +1,213 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Resolves the executors used by the connection factories from the
+ * {@link TcpConnectionFactoryProperties}.
+ * <p>Connection readers run on an {@link Executor} bean named by
+ * {@code tcp.task-executor}, or on an executor creating a virtual thread per task when
+ * {@code tcp.virtual-threads} is set, or on a thread pool built from {@code tcp.io-pool}.
+ * {@link #getExecutor()} returns null when none is configured, in which case the
+ * connection factory creates its own thread pool.
+ * <p>Received messages are handed to the binder on a thread pool built from
+ * {@code tcp.dispatch-pool}; {@link #getDispatchExecutor()} returns null when it is not
+ * configured and messages are sent on the reader thread.
+ * <p>When a {@link MeterRegistry} is provided, the pools are instrumented as
+ * {@code tcp.io} and {@code tcp.dispatch} with the standard executor metrics (active
+ * threads, queued tasks, and the time tasks wait and run).
+ * <p>The {@code DISCARD} and {@code DISCARD_OLDEST} rejection policies are only allowed
+ * for the dispatch pool: a dropped reader would leave its connection open but never read,
+ * while a rejected one closes it. Dropped dispatch tasks are counted by {@link #getDiscardedTasks()} and, with a {@link MeterRegistry}, by the
+ * {@code tcp.pool.discarded} counter tagged with the pool name; the first one is logged.
+ * <p>Virtual threads are created through
+ * {@code Executors.newVirtualThreadPerTaskExecutor()}, which is looked up reflectively
+ * since it only exists on Java 21 and later.
+ */
+public class ConnectionExecutor implements BeanFactoryAware, InitializingBean, DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(ConnectionExecutor.class);
+
+	private final TcpConnectionFactoryProperties properties;
+
+	private final List<ExecutorService> ownedExecutors = new ArrayList<>();
+
+	private final AtomicLong discardedTasks = new AtomicLong();
+
+	private BeanFactory beanFactory;
+
+	private MeterRegistry meterRegistry;
+
+	private Executor executor;
+
+	private Executor dispatchExecutor;
+
+	public ConnectionExecutor(TcpConnectionFactoryProperties properties) {
+		this.properties = properties;
+	}
+
+	@Override
+	public void setBeanFactory(BeanFactory beanFactory) {
+		this.beanFactory = beanFactory;
+	}
+
+	/**
+	 * Set the registry with which to instrument the thread pools.
+	 * @param meterRegistry the registry.
+	 */
+	public void setMeterRegistry(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		TcpConnectionFactoryProperties.RejectionPolicy ioRejectionPolicy =
+				this.properties.getIoPool().getRejectionPolicy();
+		Assert.isTrue(ioRejectionPolicy == TcpConnectionFactoryProperties.RejectionPolicy.ABORT
+						|| ioRejectionPolicy == TcpConnectionFactoryProperties.RejectionPolicy.CALLER_RUNS,
+				"'tcp.io-pool.rejection-policy' must be ABORT or CALLER_RUNS; a discarded reader would leave its "
+						+ "connection open but never read");
+		if (StringUtils.hasText(this.properties.getTaskExecutor())) {
+			this.executor = this.beanFactory.getBean(this.properties.getTaskExecutor(), Executor.class);
+		}
+		else if (this.properties.isVirtualThreads()) {
+			Method factoryMethod = ReflectionUtils.findMethod(Executors.class, "newVirtualThreadPerTaskExecutor");
+			if (factoryMethod == null) {
+				throw new IllegalStateException("'tcp.virtual-threads' requires Java 21 or later; this is Java "
+						+ System.getProperty("java.version"));
+			}
+			ExecutorService virtualThreads = (ExecutorService) ReflectionUtils.invokeMethod(factoryMethod, null);
+			this.ownedExecutors.add(virtualThreads);
+			this.executor = virtualThreads;
+		}
+		else if (this.properties.getIoPool().getMaxSize() > 0) {
+			this.executor = pool(this.properties.getIoPool(), "tcp.io", "tcp-io-");
+		}
+		if (this.properties.getDispatchPool().getMaxSize() > 0) {
+			this.dispatchExecutor = pool(this.properties.getDispatchPool(), "tcp.dispatch", "tcp-dispatch-");
+		}
+	}
+
+	/**
+	 * Return the executor for connection readers.
+	 * @return the executor, or null if the connection factory's default should be used.
+	 */
+	public Executor getExecutor() {
+		return this.executor;
+	}
+
+	/**
+	 * Return the executor for handing received messages to the binder.
+	 * @return the executor, or null if messages should be sent on the reader thread.
+	 */
+	public Executor getDispatchExecutor() {
+		return this.dispatchExecutor;
+	}
+
+	/**
+	 * Return the number of tasks dropped because a pool and its queue were full.
+	 * @return the number of discarded tasks.
+	 */
+	public long getDiscardedTasks() {
+		return this.discardedTasks.get();
+	}
+
+	private ExecutorService pool(TcpConnectionFactoryProperties.Pool pool, String name, String threadNamePrefix) {
+		Assert.isTrue(pool.getCoreSize() <= pool.getMaxSize(),
+				"The core size of the '" + name + "' pool cannot exceed its max size");
+		BlockingQueue<Runnable> queue = pool.getQueueCapacity() > 0
+				? new LinkedBlockingQueue<>(pool.getQueueCapacity())
+				: new SynchronousQueue<>();
+		ThreadPoolExecutor threadPool = new ThreadPoolExecutor(pool.getCoreSize(), pool.getMaxSize(), 60,
+				TimeUnit.SECONDS, queue, new CustomizableThreadFactory(threadNamePrefix),
+				rejectedExecutionHandler(pool.getRejectionPolicy(), name));
+		this.ownedExecutors.add(threadPool);
+		if (this.meterRegistry != null) {
+			return ExecutorServiceMetrics.monitor(this.meterRegistry, threadPool, name, Tags.empty());
+		}
+		return threadPool;
+	}
+
+	private RejectedExecutionHandler rejectedExecutionHandler(
+			TcpConnectionFactoryProperties.RejectionPolicy rejectionPolicy, String name) {
+		switch (rejectionPolicy) {
+			case CALLER_RUNS:
+				return new ThreadPoolExecutor.CallerRunsPolicy();
+			case DISCARD:
+				return counting(new ThreadPoolExecutor.DiscardPolicy(), name);
+			case DISCARD_OLDEST:
+				return counting(new ThreadPoolExecutor.DiscardOldestPolicy(), name);
+			default:
+				return new ThreadPoolExecutor.AbortPolicy();
+		}
+	}
+
+	private RejectedExecutionHandler counting(RejectedExecutionHandler policy, String name) {
+		Counter counter = this.meterRegistry == null ? null
+				: Counter.builder("tcp.pool.discarded")
+						.description("Tasks dropped because the pool and its queue were full")
+						.tag("pool", name)
+						.register(this.meterRegistry);
+		return (task, executor) -> {
+			policy.rejectedExecution(task, executor);
+			if (counter != null) {
+				counter.increment();
+			}
+			if (this.discardedTasks.getAndIncrement() == 0) {
+				logger.warn("The '" + name + "' pool is full; tasks are being discarded");
+			}
+		};
+	}
+
+	@Override
+	public void destroy() {
+		for (ExecutorService executorService : this.ownedExecutors) {
+			executorService.shutdownNow();
+		}
+	}
+
+}
@@ -19,6 +19,7 @@ import org.springframework.beans.factory.config.AbstractFactoryBean;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
+import org.springframework.integration.ip.tcp.serializer.AbstractPooledBufferByteArraySerializer;
 import org.springframework.integration.ip.tcp.serializer.ByteArrayCrLfSerializer;
 import org.springframework.integration.ip.tcp.serializer.ByteArrayLengthHeaderSerializer;
 import org.springframework.integration.ip.tcp.serializer.ByteArrayLfSerializer;
@@ -43,6 +44,12 @@ public class EncoderDecoderFactoryBean extends AbstractFactoryBean<AbstractByteA
 
 	private Integer maxMessageSize;
 
+	private int poolSize;
+
+	private Long poolWaitTimeout;
+
+	private Encoding fallback = Encoding.CRLF;
+
 	public EncoderDecoderFactoryBean(Encoding encoding) {
 		Assert.notNull(encoding, "'encoding' cannot be null");
 		this.encoding = encoding;
@@ -61,10 +68,64 @@ public class EncoderDecoderFactoryBean extends AbstractFactoryBean<AbstractByteA
 		this.maxMessageSize = maxMessageSize;
 	}
 
+	/**
+	 * The number of decode buffers to pool and reuse, for the encodings that decode into a
+	 * buffer of the maximum message size before copying the message out of it; when all
+	 * are in use, decoding waits for one to be released. 0 (default) to allocate a buffer
+	 * for each message.
+	 * @param poolSize the pool size.
+	 * @see #setPoolWaitTimeout(long)
+	 */
+	public void setPoolSize(int poolSize) {
+		this.poolSize = poolSize;
+	}
+
+	/**
+	 * The time (ms) decoding waits for a pooled buffer; when it expires, decoding fails and
+	 * the connection is closed. Waits indefinitely by default.
+	 * @param poolWaitTimeout the timeout.
+	 */
+	public void setPoolWaitTimeout(long poolWaitTimeout) {
+		this.poolWaitTimeout = poolWaitTimeout;
+	}
+
+	/**
+	 * The encoding used, with {@link Encoding#AUTO}, for connections whose framing is not
+	 * detected; default {@link Encoding#CRLF}.
+	 * @param fallback the fallback encoding.
+	 */
+	public void setFallback(Encoding fallback) {
+		Assert.isTrue(fallback != null && fallback != Encoding.AUTO, "'fallback' must be a specific encoding");
+		this.fallback = fallback;
+	}
+
 	@Override
 	protected AbstractByteArraySerializer createInstance() throws Exception {
+		AbstractByteArraySerializer codec = this.encoding == Encoding.AUTO
+				? new AutoDetectingDeserializer(codec(this.fallback))
+				: codec(this.encoding);
+		codec.setApplicationEventPublisher(this.applicationEventPublisher);
+		if (this.maxMessageSize != null) {
+			codec.setMaxMessageSize(this.maxMessageSize);
+		}
+		if (this.poolSize > 0 && codec instanceof AbstractPooledBufferByteArraySerializer) {
+			((AbstractPooledBufferByteArraySerializer) codec).setPoolSize(this.poolSize);
+			if (this.poolWaitTimeout != null) {
+				((AbstractPooledBufferByteArraySerializer) codec).setPoolWaitTimeout(this.poolWaitTimeout);
+			}
+		}
+		else if (this.poolSize > 0 && codec instanceof AutoDetectingDeserializer) {
+			((AutoDetectingDeserializer) codec).setPoolSize(this.poolSize);
+			if (this.poolWaitTimeout != null) {
+				((AutoDetectingDeserializer) codec).setPoolWaitTimeout(this.poolWaitTimeout);
+			}
+		}
+		return codec;
+	}
+
+	private AbstractByteArraySerializer codec(Encoding encoding) {
 		AbstractByteArraySerializer codec;
-		switch (this.encoding) {
+		switch (encoding) {
 			case CRLF:
 				codec = new ByteArrayCrLfSerializer();
 				break;
@@ -90,11 +151,7 @@ public class EncoderDecoderFactoryBean extends AbstractFactoryBean<AbstractByteA
 				codec = new ByteArrayRawSerializer();
 				break;
 			default:
-				throw new IllegalArgumentException("Invalid encoding: " + this.encoding);
-		}
-		codec.setApplicationEventPublisher(this.applicationEventPublisher);
-		if (this.maxMessageSize != null) {
-			codec.setMaxMessageSize(this.maxMessageSize);
+				throw new IllegalArgumentException("Invalid encoding: " + encoding);
 		}
 		return codec;
 	}
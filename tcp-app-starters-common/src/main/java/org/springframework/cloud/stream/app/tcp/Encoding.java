@@ -20,5 +20,11 @@ package org.springframework.cloud.stream.app.tcp;
  * @author Christian Tzolov
  */
 public enum Encoding {
-	CRLF, LF, NULL, STXETX, RAW, L1, L2, L4;
+	CRLF, LF, NULL, STXETX, RAW, L1, L2, L4,
+
+	/**
+	 * Detect each connection's framing from its first bytes; only for decoding.
+	 * @see AutoDetectingDeserializer
+	 */
+	AUTO;
 }
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorFactory;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorSupport;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
+
+/**
+ * Sends a heartbeat frame on each connection that has not sent anything for the heartbeat
+ * interval, and closes connections that have not received anything (heartbeats included)
+ * for a number of intervals. Heartbeat frames received from the peer are not passed on.
+ * When the peer is not expected to reply, missed heartbeats are only counted once it has
+ * sent something on the connection, so that a peer that never sends is not taken for a
+ * dead one. A single scheduled task, started when the first connection is created and
+ * cancelled when the last one closes, services all the connections.
+ */
+public class HeartbeatInterceptorFactory implements TcpConnectionInterceptorFactory {
+
+	private static final Log logger = LogFactory.getLog(HeartbeatInterceptorFactory.class);
+
+	private final Set<HeartbeatInterceptor> interceptors = ConcurrentHashMap.newKeySet();
+
+	private final TaskScheduler taskScheduler;
+
+	private final long interval;
+
+	private final byte[] heartbeat;
+
+	private final Message<byte[]> heartbeatMessage;
+
+	private int missedHeartbeats = 3;
+
+	private boolean repliesExpected = true;
+
+	private ScheduledFuture<?> future;
+
+	public HeartbeatInterceptorFactory(TaskScheduler taskScheduler, long interval, byte[] heartbeat) {
+		Assert.notNull(taskScheduler, "'taskScheduler' cannot be null");
+		Assert.isTrue(interval > 0, "'interval' must be positive");
+		Assert.notNull(heartbeat, "'heartbeat' cannot be null");
+		this.taskScheduler = taskScheduler;
+		this.interval = interval;
+		this.heartbeat = heartbeat;
+		this.heartbeatMessage = new GenericMessage<>(heartbeat);
+	}
+
+	/**
+	 * The number of intervals without receiving anything after which a connection is
+	 * considered dead and closed; 0 to never close connections.
+	 * @param missedHeartbeats the number of missed heartbeats.
+	 */
+	public void setMissedHeartbeats(int missedHeartbeats) {
+		this.missedHeartbeats = missedHeartbeats;
+	}
+
+	/**
+	 * Whether the peer is expected to send data, or echo heartbeats, on every connection;
+	 * when false, a connection on which nothing has been received is never closed.
+	 * Default true.
+	 * @param repliesExpected false if the peer may never send anything.
+	 */
+	public void setRepliesExpected(boolean repliesExpected) {
+		this.repliesExpected = repliesExpected;
+	}
+
+	@Override
+	public synchronized TcpConnectionInterceptorSupport getInterceptor() {
+		HeartbeatInterceptor interceptor = new HeartbeatInterceptor();
+		this.interceptors.add(interceptor);
+		if (this.future == null) {
+			this.future = this.taskScheduler.scheduleAtFixedRate(this::heartbeat, Math.max(this.interval / 2, 1));
+		}
+		return interceptor;
+	}
+
+	private synchronized void cancelIfIdle() {
+		if (this.interceptors.isEmpty() && this.future != null) {
+			this.future.cancel(false);
+			this.future = null;
+		}
+	}
+
+	private void heartbeat() {
+		long now = System.currentTimeMillis();
+		Iterator<HeartbeatInterceptor> iterator = this.interceptors.iterator();
+		while (iterator.hasNext()) {
+			HeartbeatInterceptor interceptor = iterator.next();
+			if (interceptor.getTheConnection() == null) {
+				continue; // not yet initialized
+			}
+			if (!interceptor.isOpen()) {
+				iterator.remove();
+			}
+			else if (this.missedHeartbeats > 0 && (this.repliesExpected || interceptor.received)
+					&& now - interceptor.lastReceived > this.interval * this.missedHeartbeats) {
+				logger.warn("No data received for " + (now - interceptor.lastReceived) + "ms; closing connection "
+						+ interceptor.getConnectionId());
+				iterator.remove();
+				interceptor.close();
+			}
+			else if (now - interceptor.lastSent >= this.interval) {
+				try {
+					interceptor.send(this.heartbeatMessage);
+				}
+				catch (Exception e) {
+					logger.warn("Failed to send heartbeat; closing connection " + interceptor.getConnectionId(), e);
+					iterator.remove();
+					interceptor.close();
+				}
+			}
+		}
+		cancelIfIdle();
+	}
+
+	private final class HeartbeatInterceptor extends TcpConnectionInterceptorSupport {
+
+		private volatile long lastReceived = System.currentTimeMillis();
+
+		private volatile long lastSent = System.currentTimeMillis();
+
+		private volatile boolean received;
+
+		@Override
+		public boolean onMessage(Message<?> message) {
+			this.lastReceived = System.currentTimeMillis();
+			this.received = true;
+			Object payload = message.getPayload();
+			if (payload instanceof byte[]
+					&& Arrays.equals((byte[]) payload, HeartbeatInterceptorFactory.this.heartbeat)) {
+				return true;
+			}
+			return super.onMessage(message);
+		}
+
+		@Override
+		public void send(Message<?> message) throws Exception {
+			super.send(message);
+			this.lastSent = System.currentTimeMillis();
+		}
+
+		@Override
+		public void close() {
+			HeartbeatInterceptorFactory.this.interceptors.remove(this);
+			super.close();
+			cancelIfIdle();
+		}
+
+	}
+
+}
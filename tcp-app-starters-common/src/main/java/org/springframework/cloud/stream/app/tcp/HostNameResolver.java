@@ -0,0 +1,170 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Caches the host names of IP addresses, found by reverse lookups done in the background
+ * so that callers never wait for a resolver. {@link #resolve(String)} returns the cached
+ * host name, if any, and starts a lookup when the address is not cached or its entry has
+ * expired; an expired host name is still returned while it is refreshed. Failed lookups
+ * are cached for a separate, usually shorter, time. Expired entries are evicted when the
+ * cache grows large.
+ */
+public class HostNameResolver implements DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(HostNameResolver.class);
+
+	private static final int LOOKUP_THREADS = 2;
+
+	private static final int MAX_ENTRIES = 10000;
+
+	private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+	private final ExecutorService executor;
+
+	private final long ttl;
+
+	private final long negativeTtl;
+
+	/**
+	 * @param ttl the time (ms) host names are cached; 0 to disable the resolver.
+	 * @param negativeTtl the time (ms) failed lookups are cached.
+	 */
+	public HostNameResolver(long ttl, long negativeTtl) {
+		Assert.isTrue(ttl >= 0, "'ttl' cannot be negative");
+		Assert.isTrue(negativeTtl >= 0, "'negativeTtl' cannot be negative");
+		this.ttl = ttl;
+		this.negativeTtl = negativeTtl;
+		this.executor = ttl > 0
+				? Executors.newFixedThreadPool(LOOKUP_THREADS, new CustomizableThreadFactory("tcp-reverse-lookup-"))
+				: null;
+	}
+
+	public boolean isEnabled() {
+		return this.executor != null;
+	}
+
+	/**
+	 * Return the host name of an address, if known.
+	 * @param address the IP address.
+	 * @return the host name, or null if it is not (yet) known.
+	 */
+	public String resolve(String address) {
+		if (this.executor == null) {
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		Entry entry = this.cache.get(address);
+		if (entry == null || (entry.expires <= now && !entry.refreshing)) {
+			Entry pending = new Entry(entry == null ? null : entry.hostName, Long.MAX_VALUE, true);
+			boolean claimed = entry == null
+					? this.cache.putIfAbsent(address, pending) == null
+					: this.cache.replace(address, entry, pending);
+			if (claimed) {
+				lookup(address);
+			}
+		}
+		return entry == null ? null : entry.hostName;
+	}
+
+	/**
+	 * @return the number of addresses in the cache, including expired entries that have
+	 * not been evicted.
+	 */
+	public int getSize() {
+		return this.cache.size();
+	}
+
+	@Override
+	public void destroy() {
+		if (this.executor != null) {
+			this.executor.shutdownNow();
+		}
+	}
+
+	private void lookup(String address) {
+		try {
+			this.executor.execute(() -> {
+				String hostName = null;
+				try {
+					hostName = reverseLookup(address);
+				}
+				catch (UnknownHostException e) {
+					// cached as a failed lookup
+				}
+				long now = System.currentTimeMillis();
+				if (hostName == null || hostName.equals(address)) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Reverse lookup failed for " + address);
+					}
+					this.cache.put(address, new Entry(null, now + this.negativeTtl, false));
+				}
+				else {
+					this.cache.put(address, new Entry(hostName, now + this.ttl, false));
+				}
+				if (this.cache.size() > MAX_ENTRIES) {
+					this.cache.values().removeIf(entry -> !entry.refreshing && entry.expires <= now);
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			this.cache.remove(address);
+		}
+	}
+
+	/**
+	 * Look up the host name of an address; called on a lookup thread.
+	 * @param address the IP address.
+	 * @return the host name, or null or the address itself if it has none.
+	 * @throws UnknownHostException if the lookup fails.
+	 */
+	protected String reverseLookup(String address) throws UnknownHostException {
+		return InetAddress.getByName(address).getHostName();
+	}
+
+	private static final class Entry {
+
+		private final String hostName;
+
+		private final long expires;
+
+		private final boolean refreshing;
+
+		Entry(String hostName, long expires, boolean refreshing) {
+			this.hostName = hostName;
+			this.expires = expires;
+			this.refreshing = refreshing;
+		}
+
+	}
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.integration.ip.IpHeaders;
+import org.springframework.integration.ip.tcp.connection.TcpConnection;
+import org.springframework.integration.ip.tcp.connection.TcpMessageMapper;
+import org.springframework.integration.support.AbstractIntegrationMessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+
+/**
+ * A {@link TcpMessageMapper} that sets the {@link IpHeaders#HOSTNAME} header from a
+ * {@link HostNameResolver} rather than from the connection, for connection factories
+ * that do not look up host names themselves. Until the resolver knows an address's host
+ * name, the header contains the IP address, as it would without a reverse lookup.
+ * <p>With a resolver, the message is built here, with the standard IP headers taken from
+ * {@link #getHostName(TcpConnection)} and the connection, so that it is built only once.
+ */
+public class HostNameTcpMessageMapper extends TcpMessageMapper {
+
+	/**
+	 * The IP headers that {@link TcpMessageMapper} adds to inbound messages.
+	 */
+	public static final List<String> STANDARD_HEADERS = Collections.unmodifiableList(Arrays.asList(
+			IpHeaders.HOSTNAME, IpHeaders.IP_ADDRESS, IpHeaders.REMOTE_PORT, IpHeaders.CONNECTION_ID,
+			IpHeaders.LOCAL_ADDRESS));
+
+	private static final String[] STANDARD_HEADER_NAMES = STANDARD_HEADERS.toArray(new String[0]);
+
+	private HostNameResolver hostNameResolver;
+
+	private String contentType;
+
+	private boolean addContentTypeHeader;
+
+	/**
+	 * @param hostNameResolver the resolver; if null, the connection's host name is used.
+	 */
+	public void setHostNameResolver(HostNameResolver hostNameResolver) {
+		this.hostNameResolver = hostNameResolver;
+	}
+
+	@Override
+	public void setContentType(String contentType) {
+		super.setContentType(contentType);
+		this.contentType = contentType;
+	}
+
+	@Override
+	public void setAddContentTypeHeader(boolean addContentTypeHeader) {
+		super.setAddContentTypeHeader(addContentTypeHeader);
+		this.addContentTypeHeader = addContentTypeHeader;
+	}
+
+	@Override
+	public Message<?> toMessage(TcpConnection connection, Map<String, Object> headers) {
+		if (this.hostNameResolver == null) {
+			return super.toMessage(connection, headers);
+		}
+		return toMessage(connection, headers, STANDARD_HEADER_NAMES);
+	}
+
+	/**
+	 * Build a message from the connection's payload with the given IP headers, custom
+	 * headers and, if configured, a content type header.
+	 * @param connection the connection.
+	 * @param headers additional headers, added if absent.
+	 * @param headerNames the IP headers to add, from {@link #STANDARD_HEADERS}.
+	 * @return the message, or null if the connection has no payload.
+	 */
+	protected Message<?> toMessage(TcpConnection connection, Map<String, Object> headers, String[] headerNames) {
+		Object payload = connection.getPayload();
+		if (payload == null) {
+			return null;
+		}
+		AbstractIntegrationMessageBuilder<Object> messageBuilder = getMessageBuilderFactory().withPayload(payload);
+		if (this.addContentTypeHeader && this.contentType != null) {
+			messageBuilder.setHeader(MessageHeaders.CONTENT_TYPE, this.contentType);
+		}
+		for (String headerName : headerNames) {
+			Object value = header(connection, headerName);
+			if (value != null) {
+				messageBuilder.setHeader(headerName, value);
+			}
+		}
+		Map<String, ?> customHeaders = supplyCustomHeaders(connection);
+		if (customHeaders != null) {
+			messageBuilder.copyHeadersIfAbsent(customHeaders);
+		}
+		if (headers != null) {
+			messageBuilder.copyHeadersIfAbsent(headers);
+		}
+		return messageBuilder.build();
+	}
+
+	/**
+	 * Return the host name for the {@link IpHeaders#HOSTNAME} header.
+	 * @param connection the connection.
+	 * @return the resolved host name, if known, otherwise the connection's host name.
+	 */
+	protected String getHostName(TcpConnection connection) {
+		String hostName = null;
+		if (this.hostNameResolver != null) {
+			hostName = this.hostNameResolver.resolve(connection.getHostAddress());
+		}
+		return hostName != null ? hostName : connection.getHostName();
+	}
+
+	private Object header(TcpConnection connection, String headerName) {
+		switch (headerName) {
+			case IpHeaders.HOSTNAME:
+				return getHostName(connection);
+			case IpHeaders.IP_ADDRESS:
+				return connection.getHostAddress();
+			case IpHeaders.REMOTE_PORT:
+				return connection.getPort();
+			case IpHeaders.CONNECTION_ID:
+				return connection.getConnectionId();
+			case IpHeaders.LOCAL_ADDRESS:
+				return connection.getSocketInfo() == null ? null : connection.getSocketInfo().getLocalAddress();
+			default:
+				return null;
+		}
+	}
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorFactory;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorFactoryChain;
+import org.springframework.scheduling.TaskScheduler;
+
+/**
+ * Builds the interceptor chains of the client-side apps from the common connection
+ * properties.
+ */
+public final class InterceptorChains {
+
+	private InterceptorChains() {
+	}
+
+	/**
+	 * Build a chain of the heartbeat interceptor, if heartbeats are enabled, the memory
+	 * budget, if one is set, and then the app's own interceptors.
+	 * @param properties the connection properties.
+	 * @param charset the charset used to encode the heartbeat payload.
+	 * @param taskScheduler the scheduler that sends heartbeats.
+	 * @param repliesExpected whether the server is expected to send data, or echo heartbeats.
+	 * @param memoryBudget the memory budget interceptor.
+	 * @param interceptors the app's own interceptors.
+	 * @return the chain.
+	 */
+	public static TcpConnectionInterceptorFactoryChain clientChain(TcpConnectionFactoryProperties properties,
+			String charset, TaskScheduler taskScheduler, boolean repliesExpected,
+			MemoryBudgetInterceptorFactory memoryBudget, TcpConnectionInterceptorFactory... interceptors) {
+
+		List<TcpConnectionInterceptorFactory> chain = new ArrayList<>();
+		if (properties.getHeartbeatInterval() > 0) {
+			HeartbeatInterceptorFactory heartbeats = new HeartbeatInterceptorFactory(taskScheduler,
+					properties.getHeartbeatInterval(),
+					properties.getHeartbeatPayload().getBytes(Charset.forName(charset)));
+			heartbeats.setMissedHeartbeats(properties.getMissedHeartbeats());
+			heartbeats.setRepliesExpected(repliesExpected);
+			chain.add(heartbeats);
+		}
+		if (properties.getMemoryBudget() > 0) {
+			chain.add(memoryBudget);
+		}
+		chain.addAll(Arrays.asList(interceptors));
+		TcpConnectionInterceptorFactoryChain factoryChain = new TcpConnectionInterceptorFactoryChain();
+		factoryChain.setInterceptors(chain.toArray(new TcpConnectionInterceptorFactory[0]));
+		return factoryChain;
+	}
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.integration.ip.tcp.connection.TcpConnection;
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link HostNameTcpMessageMapper} that can limit the IP headers added to inbound
+ * messages to a configured subset, so that messages with small payloads do not carry,
+ * and binders do not serialize, headers nobody uses. Custom headers are always added.
+ */
+public class LeanTcpMessageMapper extends HostNameTcpMessageMapper {
+
+	private String[] headerNames;
+
+	/**
+	 * Set the IP headers to add to inbound messages.
+	 * @param headerNames the header names; null for all the standard headers.
+	 */
+	public void setHeaderNames(List<String> headerNames) {
+		if (headerNames == null) {
+			this.headerNames = null;
+			return;
+		}
+		for (String headerName : headerNames) {
+			Assert.isTrue(STANDARD_HEADERS.contains(headerName),
+					() -> "Unsupported header '" + headerName + "'; supported headers are " + STANDARD_HEADERS);
+		}
+		this.headerNames = headerNames.toArray(new String[0]);
+	}
+
+	@Override
+	public Message<?> toMessage(TcpConnection connection, Map<String, Object> headers) {
+		if (this.headerNames == null) {
+			return super.toMessage(connection, headers);
+		}
+		return toMessage(connection, headers, this.headerNames);
+	}
+
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.context.ApplicationListener;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionCloseEvent;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorFactory;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorSupport;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionSupport;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.util.Assert;
+
+/**
+ * Enforces a budget for the memory used by all the connections of the connection factories
+ * it is applied to: each open connection is charged the size of its decode buffer, and
+ * each message is charged its payload size while it is being delivered or sent. When the
+ * budget is exceeded, the {@link TcpConnectionFactoryProperties.MemoryPolicy} determines
+ * what happens: connection readers wait until memory used by messages is released, new
+ * connections are closed as soon as they are opened, or the connection using the most
+ * memory is closed.
+ * <p>Readers only wait while messages are charged, since only the release of message
+ * memory can end the wait; when the decode buffers of the open connections alone exceed
+ * the budget, messages are delivered one at a time instead.
+ * <p>Must be registered as a bean so that it is notified when connections close. A budget
+ * of 0 is unlimited.
+ */
+public class MemoryBudgetInterceptorFactory implements TcpConnectionInterceptorFactory,
+		ApplicationListener<TcpConnectionCloseEvent> {
+
+	private static final Log logger = LogFactory.getLog(MemoryBudgetInterceptorFactory.class);
+
+	private final Map<String, MemoryBudgetInterceptor> interceptors = new ConcurrentHashMap<>();
+
+	private final Map<UUID, PendingRelease> pending = new ConcurrentHashMap<>();
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition released = this.lock.newCondition();
+
+	private final AtomicLong used = new AtomicLong();
+
+	private final AtomicLong messageBytes = new AtomicLong();
+
+	private final long budget;
+
+	private final TcpConnectionFactoryProperties.MemoryPolicy policy;
+
+	private final long decodeBufferSize;
+
+	private volatile boolean releaseWhenHandled;
+
+	public MemoryBudgetInterceptorFactory(long budget, TcpConnectionFactoryProperties.MemoryPolicy policy,
+			long decodeBufferSize) {
+		Assert.isTrue(budget >= 0, "'budget' cannot be negative");
+		Assert.notNull(policy, "'policy' cannot be null");
+		this.budget = budget;
+		this.policy = policy;
+		this.decodeBufferSize = decodeBufferSize;
+	}
+
+	/**
+	 * Publish the memory currently charged to connections as the {@code tcp.memory.used}
+	 * gauge.
+	 * @param meterRegistry the registry.
+	 */
+	public void setMeterRegistry(MeterRegistry meterRegistry) {
+		Gauge.builder("tcp.memory.used", this.used, AtomicLong::get)
+				.description("Bytes charged to connections against the memory budget")
+				.baseUnit("bytes")
+				.register(meterRegistry);
+	}
+
+	@Override
+	public TcpConnectionInterceptorSupport getInterceptor() {
+		return new MemoryBudgetInterceptor(this.decodeBufferSize);
+	}
+
+	/**
+	 * Return a factory for the connections of a connection factory with a different
+	 * decode buffer size; the connections share this budget.
+	 * @param decodeBufferSize the decode buffer size charged to each connection.
+	 * @return the factory.
+	 */
+	public TcpConnectionInterceptorFactory withDecodeBufferSize(long decodeBufferSize) {
+		return () -> new MemoryBudgetInterceptor(decodeBufferSize);
+	}
+
+	/**
+	 * Return an interceptor for the executor channel that received messages are sent to,
+	 * so that each message stays charged until it has been handled, rather than only
+	 * until it has been queued. Must be the channel's first interceptor, so that it sees
+	 * messages dropped by the others.
+	 * @return the interceptor.
+	 */
+	public ExecutorChannelInterceptor getDispatchInterceptor() {
+		this.releaseWhenHandled = true;
+		return new DispatchInterceptor();
+	}
+
+	@Override
+	public void onApplicationEvent(TcpConnectionCloseEvent event) {
+		MemoryBudgetInterceptor interceptor = this.interceptors.remove(event.getConnectionId());
+		if (interceptor != null) {
+			for (Map.Entry<UUID, PendingRelease> entry : this.pending.entrySet()) {
+				if (entry.getValue().interceptor == interceptor && this.pending.remove(entry.getKey(), entry.getValue())) {
+					release(interceptor, entry.getValue().bytes);
+				}
+			}
+			interceptor.charge(-interceptor.decodeBufferSize);
+			signalReleased();
+		}
+	}
+
+	private boolean exceeded() {
+		return this.budget > 0 && this.used.get() > this.budget;
+	}
+
+	private void acquire(MemoryBudgetInterceptor interceptor, long bytes) throws InterruptedException {
+		if (this.policy == TcpConnectionFactoryProperties.MemoryPolicy.PAUSE && exceeded()) {
+			this.lock.lock();
+			try {
+				while (exceeded() && this.messageBytes.get() > 0) {
+					this.released.await();
+				}
+			}
+			finally {
+				this.lock.unlock();
+			}
+		}
+		this.messageBytes.addAndGet(bytes);
+		interceptor.charge(bytes);
+		if (this.policy == TcpConnectionFactoryProperties.MemoryPolicy.SHED && exceeded()) {
+			shed();
+		}
+	}
+
+	private void release(MemoryBudgetInterceptor interceptor, long bytes) {
+		this.messageBytes.addAndGet(-bytes);
+		interceptor.charge(-bytes);
+		signalReleased();
+	}
+
+	private void signalReleased() {
+		if (this.policy == TcpConnectionFactoryProperties.MemoryPolicy.PAUSE) {
+			this.lock.lock();
+			try {
+				this.released.signalAll();
+			}
+			finally {
+				this.lock.unlock();
+			}
+		}
+	}
+
+	private void handled(Message<?> message) {
+		PendingRelease pendingRelease = this.pending.remove(message.getHeaders().getId());
+		if (pendingRelease != null) {
+			release(pendingRelease.interceptor, pendingRelease.bytes);
+		}
+	}
+
+	private void shed() {
+		MemoryBudgetInterceptor largest = null;
+		for (MemoryBudgetInterceptor interceptor : this.interceptors.values()) {
+			if (largest == null || interceptor.charged.get() > largest.charged.get()) {
+				largest = interceptor;
+			}
+		}
+		if (largest != null) {
+			logger.warn("Memory budget exceeded; closing connection " + largest.getConnectionId() + " using "
+					+ largest.charged.get() + " bytes");
+			largest.close();
+		}
+	}
+
+	private final class MemoryBudgetInterceptor extends TcpConnectionInterceptorSupport {
+
+		private final AtomicLong charged = new AtomicLong();
+
+		private final long decodeBufferSize;
+
+		MemoryBudgetInterceptor(long decodeBufferSize) {
+			this.decodeBufferSize = decodeBufferSize;
+		}
+
+		@Override
+		public void setTheConnection(TcpConnectionSupport theConnection) {
+			super.setTheConnection(theConnection);
+			if (MemoryBudgetInterceptorFactory.this.policy == TcpConnectionFactoryProperties.MemoryPolicy.REJECT
+					&& exceeded()) {
+				logger.warn("Memory budget exceeded; rejecting connection " + theConnection.getConnectionId());
+				theConnection.close();
+				return;
+			}
+			charge(this.decodeBufferSize);
+			MemoryBudgetInterceptorFactory.this.interceptors.put(theConnection.getConnectionId(), this);
+		}
+
+		@Override
+		public boolean onMessage(Message<?> message) {
+			long size = size(message);
+			try {
+				acquire(this, size);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+			if (size == 0 || !MemoryBudgetInterceptorFactory.this.releaseWhenHandled) {
+				try {
+					return super.onMessage(message);
+				}
+				finally {
+					release(this, size);
+				}
+			}
+			UUID id = message.getHeaders().getId();
+			MemoryBudgetInterceptorFactory.this.pending.put(id, new PendingRelease(this, size));
+			try {
+				return super.onMessage(message);
+			}
+			catch (RuntimeException e) {
+				handled(message);
+				throw e;
+			}
+		}
+
+		@Override
+		public void send(Message<?> message) throws Exception {
+			long size = size(message);
+			acquire(this, size);
+			try {
+				super.send(message);
+			}
+			finally {
+				release(this, size);
+			}
+		}
+
+		private void charge(long bytes) {
+			this.charged.addAndGet(bytes);
+			MemoryBudgetInterceptorFactory.this.used.addAndGet(bytes);
+		}
+
+		private long size(Message<?> message) {
+			Object payload = message.getPayload();
+			if (payload instanceof byte[]) {
+				return ((byte[]) payload).length;
+			}
+			if (payload instanceof String) {
+				return ((String) payload).length() * 2L;
+			}
+			return 0;
+		}
+
+	}
+
+	private static final class PendingRelease {
+
+		private final MemoryBudgetInterceptor interceptor;
+
+		private final long bytes;
+
+		PendingRelease(MemoryBudgetInterceptor interceptor, long bytes) {
+			this.interceptor = interceptor;
+			this.bytes = bytes;
+		}
+
+	}
+
+	private final class DispatchInterceptor implements ExecutorChannelInterceptor {
+
+		@Override
+		public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+			if (!sent || ex != null) {
+				handled(message);
+			}
+		}
+
+		@Override
+		public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler,
+				Exception ex) {
+			handled(message);
+		}
+
+	}
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.tcp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.core.serializer.Serializer;
+import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link Serializer} that frames {@code String} payloads itself, encoding them straight
+ * into a reusable buffer that already holds the frame's header and to which the trailer is
+ * appended, so that the whole frame is written with a single call and neither an encoded
+ * {@code byte[]} nor a framed copy of it is allocated for each message. Strings whose
+ * characters all fit in a single byte are copied directly when the charset is ASCII
+ * compatible; others go through a {@link CharsetEncoder}. The buffer and encoder are
+ * reused by each sending thread. Other payloads are passed to the delegate serializer.
+ * <p>Use with a mapper that does not convert strings to bytes.
+ */
+public class StringEncodingSerializer implements Serializer<Object> {
+
+	private final AbstractByteArraySerializer delegate;
+
+	private final Encoding encoding;
+
+	private final Charset charset;
+
+	private final int singleByteLimit;
+
+	private final ThreadLocal<EncoderState> state;
+
+	public StringEncodingSerializer(AbstractByteArraySerializer delegate, Encoding encoding, Charset charset) {
+		Assert.notNull(delegate, "'delegate' cannot be null");
+		Assert.notNull(encoding, "'encoding' cannot be null");
+		Assert.isTrue(encoding != Encoding.AUTO, "AUTO can only be used to decode");
+		Assert.notNull(charset, "'charset' cannot be null");
+		this.delegate = delegate;
+		this.encoding = encoding;
+		this.charset = charset;
+		if (StandardCharsets.ISO_8859_1.equals(charset)) {
+			this.singleByteLimit = 0x100;
+		}
+		else if (StandardCharsets.US_ASCII.equals(charset) || StandardCharsets.UTF_8.equals(charset)) {
+			this.singleByteLimit = 0x80;
+		}
+		else {
+			this.singleByteLimit = 0;
+		}
+		this.state = ThreadLocal.withInitial(() -> new EncoderState(this.charset));
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void serialize(Object object, OutputStream outputStream) throws IOException {
+		if (!(object instanceof String)) {
+			((Serializer<Object>) (Serializer<?>) this.delegate).serialize(object, outputStream);
+			return;
+		}
+		String string = (String) object;
+		EncoderState state = this.state.get();
+		int headerLength = headerLength();
+		state.clear(headerLength + string.length() + 1);
+		ByteBuffer buffer = state.buffer;
+		header(buffer);
+		if (!encodeSingleBytes(string, buffer)) {
+			buffer.position(headerLength);
+			buffer = state.encode(string);
+		}
+		int length = buffer.position() - headerLength;
+		trailer(state, length);
+		buffer = state.buffer;
+		outputStream.write(buffer.array(), 0, buffer.position());
+	}
+
+	private int headerLength() {
+		switch (this.encoding) {
+			case STXETX:
+			case L1:
+				return 1;
+			case L2:
+				return 2;
+			case L4:
+				return 4;
+			default:
+				return 0;
+		}
+	}
+
+	private void header(ByteBuffer buffer) {
+		if (this.encoding == Encoding.STXETX) {
+			buffer.put((byte) 0x02);
+		}
+		else {
+			buffer.position(headerLength());
+		}
+	}
+
+	private void trailer(EncoderState state, int length) {
+		switch (this.encoding) {
+			case CRLF:
+				state.ensureRemaining(2);
+				state.buffer.put((byte) '\r').put((byte) '\n');
+				break;
+			case LF:
+				state.ensureRemaining(1);
+				state.buffer.put((byte) '\n');
+				break;
+			case NULL:
+				state.ensureRemaining(1);
+				state.buffer.put((byte) 0);
+				break;
+			case STXETX:
+				state.ensureRemaining(1);
+				state.buffer.put((byte) 0x03);
+				break;
+			case L1:
+				Assert.isTrue(length <= 0xff, () -> "Length header: " + length + " too large for 1 byte header");
+				state.buffer.put(0, (byte) length);
+				break;
+			case L2:
+				Assert.isTrue(length <= 0xffff, () -> "Length header: " + length + " too large for 2 byte header");
+				state.buffer.putShort(0, (short) length);
+				break;
+			case L4:
+				state.buffer.putInt(0, length);
+				break;
+			default:
+				break;
+		}
+	}
+
+	private boolean encodeSingleBytes(String string, ByteBuffer buffer) {
+		if (this.singleByteLimit == 0) {
+			return false;
+		}
+		int length = string.length();
+		byte[] array = buffer.array();
+		int position = buffer.position();
+		for (int i = 0; i < length; i++) {
+			char c = string.charAt(i);
+			if (c >= this.singleByteLimit) {
+				return false;
+			}
+			array[position + i] = (byte) c;
+		}
+		buffer.position(position + length);
+		return true;
+	}
+
+	private static final class EncoderState {
+
+		private final CharsetEncoder encoder;
+
+		private ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+		EncoderState(Charset charset) {
+			this.encoder = charset.newEncoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+
+		void clear(int capacity) {
+			if (this.buffer.capacity() < capacity) {
+				this.buffer = ByteBuffer.allocate(Math.max(capacity, this.buffer.capacity() * 2));
+			}
+			this.buffer.clear();
+		}
+
+		void ensureRemaining(int remaining) {
+			if (this.buffer.remaining() < remaining) {
+				ByteBuffer larger = ByteBuffer.allocate(Math.max(this.buffer.capacity() * 2,
+						this.buffer.position() + remaining));
+				this.buffer.flip();
+				larger.put(this.buffer);
+				this.buffer = larger;
+			}
+		}
+
+		ByteBuffer encode(String string) throws CharacterCodingException {
+			CharBuffer chars = CharBuffer.wrap(string);
+			this.encoder.reset();
+			CoderResult result = this.encoder.encode(chars, this.buffer, true);
+			while (result.isOverflow()) {
+				ensureRemaining((int) (chars.remaining() * this.encoder.maxBytesPerChar()) + 16);
+				result = this.encoder.encode(chars, this.buffer, true);
+			}
+			if (result.isError()) {
+				result.throwException();
+			}
+			result = this.encoder.flush(this.buffer);
+			while (result.isOverflow()) {
+				ensureRemaining(16);
+				result = this.encoder.flush(this.buffer);
+			}
+			return this.buffer;
+		}
+
+	}
+
+}
@@ -39,6 +39,18 @@ public final class TcpConnectionFactoryProperties {
 	 */
 	private boolean reverseLookup = false;
 
+	/**
+	 * The time (ms) host names found by reverse lookups are cached; when set, lookups are done in the background
+	 * and messages carry the IP address until the host name is known. 0 to look up each new connection's host
+	 * name before reading from it.
+	 */
+	private long reverseLookupCacheTtl = 0;
+
+	/**
+	 * The time (ms) failed reverse lookups are cached.
+	 */
+	private long reverseLookupNegativeCacheTtl = 10000;
+
 	/**
 	 * The timeout (ms) before closing the socket when no data is received.
 	 */
@@ -54,6 +66,61 @@ public final class TcpConnectionFactoryProperties {
 	 */
 	private boolean useDirectBuffers = false;
 
+	/**
+	 * Whether to set TCP_NODELAY on sockets, so that small frames are sent immediately rather than coalesced;
+	 * recommended for connections to or from the same host.
+	 */
+	private boolean noDelay = false;
+
+	/**
+	 * The name of an Executor bean to run connection readers; by default each connection factory uses its own thread pool.
+	 */
+	private String taskExecutor;
+
+	/**
+	 * Whether to run connection readers on virtual threads (requires Java 21+); ignored if a task executor is specified.
+	 */
+	private boolean virtualThreads = false;
+
+	/**
+	 * The pool running connection readers; used when its max-size is set and no task executor or virtual threads
+	 * are configured.
+	 */
+	private final Pool ioPool = new Pool(RejectionPolicy.ABORT);
+
+	/**
+	 * The pool handing received messages to the binder; when its max-size is not set, messages are sent on the
+	 * reader thread.
+	 */
+	private final Pool dispatchPool = new Pool(RejectionPolicy.CALLER_RUNS);
+
+	/**
+	 * The maximum number of bytes that all connections may use for decode buffers and messages being delivered or
+	 * sent; 0 for no limit.
+	 */
+	private long memoryBudget = 0;
+
+	/**
+	 * What to do when the memory budget is exceeded.
+	 */
+	private MemoryPolicy memoryPolicy = MemoryPolicy.PAUSE;
+
+	/**
+	 * The interval (ms) at which heartbeat frames are sent on idle connections; 0 to disable heartbeats.
+	 */
+	private long heartbeatInterval = 0;
+
+	/**
+	 * The content of heartbeat frames; received heartbeat frames are discarded.
+	 */
+	private String heartbeatPayload = "HEARTBEAT";
+
+	/**
+	 * The number of heartbeat intervals without receiving any data after which the connection is closed;
+	 * 0 to never close.
+	 */
+	private int missedHeartbeats = 3;
+
 	public int getPort() {
 		return this.port;
 	}
@@ -70,6 +137,14 @@ public final class TcpConnectionFactoryProperties {
 		this.useDirectBuffers = useDirectBuffers;
 	}
 
+	public boolean isNoDelay() {
+		return this.noDelay;
+	}
+
+	public void setNoDelay(boolean noDelay) {
+		this.noDelay = noDelay;
+	}
+
 	public boolean isNio() {
 		return this.nio;
 	}
@@ -94,4 +169,164 @@ public final class TcpConnectionFactoryProperties {
 		this.reverseLookup = reverseLookup;
 	}
 
+	public long getReverseLookupCacheTtl() {
+		return this.reverseLookupCacheTtl;
+	}
+
+	public void setReverseLookupCacheTtl(long reverseLookupCacheTtl) {
+		this.reverseLookupCacheTtl = reverseLookupCacheTtl;
+	}
+
+	public long getReverseLookupNegativeCacheTtl() {
+		return this.reverseLookupNegativeCacheTtl;
+	}
+
+	public void setReverseLookupNegativeCacheTtl(long reverseLookupNegativeCacheTtl) {
+		this.reverseLookupNegativeCacheTtl = reverseLookupNegativeCacheTtl;
+	}
+
+	public String getTaskExecutor() {
+		return this.taskExecutor;
+	}
+
+	public void setTaskExecutor(String taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	public boolean isVirtualThreads() {
+		return this.virtualThreads;
+	}
+
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	public Pool getIoPool() {
+		return this.ioPool;
+	}
+
+	public Pool getDispatchPool() {
+		return this.dispatchPool;
+	}
+
+	public long getMemoryBudget() {
+		return this.memoryBudget;
+	}
+
+	public void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	public MemoryPolicy getMemoryPolicy() {
+		return this.memoryPolicy;
+	}
+
+	public void setMemoryPolicy(MemoryPolicy memoryPolicy) {
+		this.memoryPolicy = memoryPolicy;
+	}
+
+	public long getHeartbeatInterval() {
+		return this.heartbeatInterval;
+	}
+
+	public void setHeartbeatInterval(long heartbeatInterval) {
+		this.heartbeatInterval = heartbeatInterval;
+	}
+
+	public String getHeartbeatPayload() {
+		return this.heartbeatPayload;
+	}
+
+	public void setHeartbeatPayload(String heartbeatPayload) {
+		this.heartbeatPayload = heartbeatPayload;
+	}
+
+	public int getMissedHeartbeats() {
+		return this.missedHeartbeats;
+	}
+
+	public void setMissedHeartbeats(int missedHeartbeats) {
+		this.missedHeartbeats = missedHeartbeats;
+	}
+
+	public static class Pool {
+
+		/**
+		 * The number of threads kept in the pool.
+		 */
+		private int coreSize = 1;
+
+		/**
+		 * The maximum number of threads; 0 to not use this pool.
+		 */
+		private int maxSize = 0;
+
+		/**
+		 * The number of tasks queued when all threads are busy before more threads are added;
+		 * 0 to hand tasks directly to a thread.
+		 */
+		private int queueCapacity = 0;
+
+		/**
+		 * What to do with a task when the pool and its queue are full.
+		 */
+		private RejectionPolicy rejectionPolicy;
+
+		Pool(RejectionPolicy rejectionPolicy) {
+			this.rejectionPolicy = rejectionPolicy;
+		}
+
+		public int getCoreSize() {
+			return this.coreSize;
+		}
+
+		public void setCoreSize(int coreSize) {
+			this.coreSize = coreSize;
+		}
+
+		public int getMaxSize() {
+			return this.maxSize;
+		}
+
+		public void setMaxSize(int maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		public int getQueueCapacity() {
+			return this.queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+		public RejectionPolicy getRejectionPolicy() {
+			return this.rejectionPolicy;
+		}
+
+		public void setRejectionPolicy(RejectionPolicy rejectionPolicy) {
+			this.rejectionPolicy = rejectionPolicy;
+		}
+
+	}
+
+	/**
+	 * What a pool does with a task it cannot accept: throw an exception (a rejected reader
+	 * closes its connection), run it on the submitting thread, drop it, or drop the oldest
+	 * queued task. The last two are only allowed for the dispatch pool, where a dropped task
+	 * is a lost message; drops are counted.
+	 */
+	public enum RejectionPolicy {
+		ABORT, CALLER_RUNS, DISCARD, DISCARD_OLDEST;
+	}
+
+	/**
+	 * What to do when the memory budget is exceeded: pause reading until memory is
+	 * released, close new connections as soon as they are opened, or close the connection
+	 * using the most memory.
+	 */
+	public enum MemoryPolicy {
+		PAUSE, REJECT, SHED;
+	}
+
 }